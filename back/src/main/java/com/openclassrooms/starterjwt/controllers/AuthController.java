@@ -1,28 +1,43 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.Objects;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.RevokedTokenIndex;
+import com.openclassrooms.starterjwt.security.ratelimit.LoginRateLimiter;
+import com.openclassrooms.starterjwt.security.services.CachedUserDetailsService;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
+import io.jsonwebtoken.Claims;
+
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/auth")
@@ -31,19 +46,29 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final LoginRateLimiter loginRateLimiter;
+    private final RevokedTokenIndex revokedTokenIndex;
+    private final CachedUserDetailsService userDetailsService;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            LoginRateLimiter loginRateLimiter,
+            RevokedTokenIndex revokedTokenIndex,
+            CachedUserDetailsService userDetailsService) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.loginRateLimiter = loginRateLimiter;
+        this.revokedTokenIndex = revokedTokenIndex;
+        this.userDetailsService = userDetailsService;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        loginRateLimiter.checkLoginAttempt(loginRequest.getEmail(), request.getRemoteAddr());
 
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
@@ -52,18 +77,64 @@ public class AuthController {
         String jwt = jwtUtils.generateJwtToken(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+        return ResponseEntity.ok(toJwtResponse(jwt, userDetails));
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest) {
+        Claims claims = jwtUtils.getClaimsFromRefreshToken(refreshTokenRequest.getRefreshToken());
+        if (claims == null || revokedTokenIndex.isRevoked(claims)) {
+            return invalidRefreshToken();
+        }
+
+        UserDetailsImpl userDetails;
+        try {
+            userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(claims.getSubject());
+        } catch (UsernameNotFoundException e) {
+            return invalidRefreshToken();
+        }
+
+        // Rotation: each refresh token can be exchanged once, a replay loses the race on the revocation insert.
+        if (!Objects.equals(jwtUtils.getUserDetailsFromClaims(claims).getId(), userDetails.getId())
+                || !revokedTokenIndex.revoke(claims.getId(), claims.getExpiration())) {
+            return invalidRefreshToken();
+        }
+
+        return ResponseEntity.ok(toJwtResponse(jwtUtils.generateJwtToken(userDetails), userDetails));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest, HttpServletRequest request) {
+        Claims refreshClaims = jwtUtils.getClaimsFromRefreshToken(refreshTokenRequest.getRefreshToken());
+        if (refreshClaims != null) {
+            revokedTokenIndex.revoke(refreshClaims.getId(), refreshClaims.getExpiration());
+        }
+
+        String headerAuth = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (headerAuth != null && headerAuth.startsWith("Bearer ")) {
+            Claims accessClaims = jwtUtils.getClaimsFromJwtToken(headerAuth.substring(7));
+            if (accessClaims != null && accessClaims.getId() != null) {
+                revokedTokenIndex.revoke(accessClaims.getId(), accessClaims.getExpiration());
+            }
         }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
+        return ResponseEntity.ok(new MessageResponse("Logged out successfully!"));
+    }
+
+    private JwtResponse toJwtResponse(String jwt, UserDetailsImpl userDetails) {
+        return new JwtResponse(jwt,
+                jwtUtils.generateRefreshToken(userDetails),
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                Boolean.TRUE.equals(userDetails.getAdmin()));
+    }
+
+    private ResponseEntity<?> invalidRefreshToken() {
+        return ResponseEntity
+                .status(HttpStatus.UNAUTHORIZED)
+                .body(new MessageResponse("Error: Refresh token is invalid or expired"));
     }
 
     @PostMapping("/register")
@@ -85,4 +156,20 @@ public class AuthController {
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> handleServiceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Too many authentication requests, please retry later"));
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<?> handleTooManyRequests(TooManyRequestsException e) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Too many login attempts, please retry later"));
+    }
 }
@@ -2,51 +2,286 @@ package com.openclassrooms.starterjwt.controllers;
 
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.request.SessionCursor;
+import com.openclassrooms.starterjwt.payload.request.SessionWatermark;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.payload.response.StreamTokenResponse;
+import com.openclassrooms.starterjwt.payload.response.WaitlistPositionResponse;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.BookingEngine;
+import com.openclassrooms.starterjwt.services.CatalogVersionService;
+import com.openclassrooms.starterjwt.services.SessionEventBroadcaster;
+import com.openclassrooms.starterjwt.services.SessionExportService;
+import com.openclassrooms.starterjwt.services.SessionImportService;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.SessionSnapshotService;
+import com.openclassrooms.starterjwt.services.SessionSyncService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = SessionController.NEXT_CURSOR_HEADER)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final BookingEngine bookingEngine;
+    private final SessionImportService sessionImportService;
+    private final SessionExportService sessionExportService;
+    private final SessionEventBroadcaster sessionEventBroadcaster;
+    private final SessionSyncService sessionSyncService;
+    private final CatalogVersionService catalogVersionService;
+    private final SessionSnapshotService sessionSnapshotService;
+    private final JwtUtils jwtUtils;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBulkSize;
+    private final int maxChangesSize;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             BookingEngine bookingEngine,
+                             SessionImportService sessionImportService,
+                             SessionExportService sessionExportService,
+                             SessionEventBroadcaster sessionEventBroadcaster,
+                             SessionSyncService sessionSyncService,
+                             CatalogVersionService catalogVersionService,
+                             SessionSnapshotService sessionSnapshotService,
+                             JwtUtils jwtUtils,
+                             @Value("${oc.app.sessionPageDefaultSize:50}") int defaultPageSize,
+                             @Value("${oc.app.sessionPageMaxSize:100}") int maxPageSize,
+                             @Value("${oc.app.sessionBulkMaxSize:10000}") int maxBulkSize,
+                             @Value("${oc.app.sessionChangesMaxSize:1000}") int maxChangesSize) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.bookingEngine = bookingEngine;
+        this.sessionImportService = sessionImportService;
+        this.sessionExportService = sessionExportService;
+        this.sessionEventBroadcaster = sessionEventBroadcaster;
+        this.sessionSyncService = sessionSyncService;
+        this.catalogVersionService = catalogVersionService;
+        this.sessionSnapshotService = sessionSnapshotService;
+        this.jwtUtils = jwtUtils;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBulkSize = maxBulkSize;
+        this.maxChangesSize = maxChangesSize;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            Long sessionId = Long.valueOf(id);
+            if (request.checkNotModified(this.catalogVersionService.etag(CatalogVersionService.Catalog.SESSIONS, sessionId),
+                    this.catalogVersionService.lastModified(CatalogVersionService.Catalog.SESSIONS))) {
+                return notModified();
+            }
+
+            SessionDto session = this.sessionService.getDtoById(sessionId);
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            return ResponseEntity.ok().cacheControl(CatalogVersionService.CACHE_CONTROL).body(session);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date to,
+            @RequestParam(value = "teacherId", required = false) Long teacherId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            WebRequest request) {
+        if (size != null && size < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = Math.min(size != null ? size : this.defaultPageSize, this.maxPageSize);
+        SessionCursor after = cursor != null ? SessionCursor.decode(cursor) : null;
+
+        UserDetailsImpl currentUser = UserController.currentUser();
+        Long viewerId = currentUser != null ? currentUser.getId() : null;
+
+        if (from == null && to == null && teacherId == null && after == null
+                && pageSize == this.sessionSnapshotService.getPageSize()) {
+            SessionSnapshotService.Snapshot snapshot = this.sessionSnapshotService.current(viewerId);
+            if (snapshot != null) {
+                return fromSnapshot(snapshot, currentUser, request);
+            }
+        }
+
+        // bookedByMe differs per viewer, so the viewer is part of the tag.
+        String etag = this.catalogVersionService.etag(CatalogVersionService.Catalog.SESSIONS, viewerTag(currentUser));
+        if (request.checkNotModified(etag, this.catalogVersionService.lastModified(CatalogVersionService.Catalog.SESSIONS))) {
+            return notModified();
+        }
+
+        // One extra row tells whether a next page exists without a count query.
+        return page(this.sessionService.findPage(from, to, teacherId, null, viewerId, after, pageSize + 1), pageSize);
+    }
+
+    // The tag carries the snapshot's own version, which may trail the catalog by the staleness bound.
+    private ResponseEntity<?> fromSnapshot(SessionSnapshotService.Snapshot snapshot, UserDetailsImpl currentUser, WebRequest request) {
+        boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = this.catalogVersionService.etag(snapshot.getVersion(), viewerTag(currentUser), gzip ? "gzip" : "identity");
+        if (request.checkNotModified(etag, snapshot.getVersion().getLastModified())) {
+            return notModified();
+        }
+
+        Set<Long> booked = currentUser != null
+                ? this.sessionService.findBookedSessionIds(currentUser.getId())
+                : Collections.emptySet();
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CatalogVersionService.CACHE_CONTROL)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (snapshot.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, snapshot.getNextCursor());
+        }
+        // Only the page without bookings is compressed ahead of time; a personalised one goes out uncompressed.
+        if (gzip && booked.isEmpty()) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzipBody());
+        }
+        return response.body(snapshot.body(booked));
+    }
+
+    // gzip is acceptable when listed, or matched by "*", with a non-zero q-value; an explicit entry overrides "*".
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = quality;
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        Double quality = gzip != null ? gzip : any;
+        return quality != null && quality > 0;
+    }
+
+    private static String viewerTag(UserDetailsImpl currentUser) {
+        return currentUser != null ? "u" + currentUser.getId() : "anonymous";
+    }
+
+    static ResponseEntity<?> page(List<SessionSummaryDto> sessions, int pageSize) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CatalogVersionService.CACHE_CONTROL);
+        if (sessions.size() > pageSize) {
+            sessions = sessions.subList(0, pageSize);
+            response.header(NEXT_CURSOR_HEADER, SessionCursor.after(sessions.get(pageSize - 1)).encode());
+        }
+
+        return response.body(sessions);
+    }
+
+    // Sessions written and deleted since the watermark; without one, or with an expired one, reset is set and
+    // the whole catalog is returned, page by page while hasMore is set.
+    @GetMapping("/changes")
+    public ResponseEntity<?> changes(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "size", required = false) Integer size) {
+        if (size != null && size < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = Math.min(size != null ? size : this.maxChangesSize, this.maxChangesSize);
+        SessionWatermark watermark = since != null ? SessionWatermark.decode(since) : null;
+
+        return ResponseEntity.ok().body(this.sessionSyncService.findChanges(watermark, pageSize));
+    }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+    // WebRequest.checkNotModified has already set the status and the validators.
+    static ResponseEntity<?> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CatalogVersionService.CACHE_CONTROL).build();
+    }
+
+    // Change events for open listings: created, updated, deleted, participant_joined, participant_left and resync.
+    // Browsers open it with EventSource, which cannot send the Bearer header: they pass a token from /stream/token
+    // as the "token" query parameter instead, and fetch a new one before reconnecting.
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return this.sessionEventBroadcaster.subscribe();
+    }
+
+    @PostMapping("/stream/token")
+    public ResponseEntity<?> streamToken() {
+        UserDetailsImpl currentUser = UserController.currentUser();
+
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        return ResponseEntity.ok().body(new StreamTokenResponse(this.jwtUtils.generateStreamToken(currentUser),
+                this.jwtUtils.getStreamTokenExpirationMs()));
+    }
+
+    // Written while the rows are read, so the response size is not bounded by the heap.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date to,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        SessionExportService.Format exportFormat = SessionExportService.Format.of(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"sessions." + exportFormat.getExtension() + "\"")
+                .body(out -> this.sessionExportService.export(from, to, exportFormat, out));
     }
 
     @PostMapping()
@@ -59,6 +294,16 @@ public class SessionController {
         return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
+    // Invalid items are reported by index with their errors and skipped; the valid ones are created together.
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createAll(@RequestBody List<SessionDto> sessionDtos) {
+        if (sessionDtos.isEmpty() || sessionDtos.size() > this.maxBulkSize) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok().body(this.sessionImportService.createAll(sessionDtos));
+    }
+
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
         try {
@@ -86,25 +331,66 @@ public class SessionController {
         }
     }
 
+    // Completes once the booking is durable; with the booking engine disabled the future is already done.
     @PostMapping("{id}/participate/{userId}")
-    public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+    public CompletableFuture<ResponseEntity<?>> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            return this.bookingEngine.participate(Long.parseLong(id), Long.parseLong(userId))
+                    .thenApply(booked -> ResponseEntity.ok().build());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException();
+        }
+    }
 
-            return ResponseEntity.ok().build();
+    @DeleteMapping("{id}/participate/{userId}")
+    public CompletableFuture<ResponseEntity<?>> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            return this.bookingEngine.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId))
+                    .thenApply(cancelled -> ResponseEntity.ok().build());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException();
+        }
+    }
+
+    // Only open while the session is full; returns the caller's place in line.
+    @PostMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> joinWaitlist(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            long position = this.sessionService.joinWaitlist(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(new WaitlistPositionResponse(position));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
-    @DeleteMapping("{id}/participate/{userId}")
-    public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+    @GetMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> getWaitlistPosition(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+            long position = this.sessionService.getWaitlistPosition(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(new WaitlistPositionResponse(position));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            this.sessionService.leaveWaitlist(Long.parseLong(id), Long.parseLong(userId));
 
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> handleServiceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Too many booking requests, please retry later"));
+    }
 }
@@ -1,10 +1,17 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.CatalogVersionService;
 import com.openclassrooms.starterjwt.services.TeacherService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.validation.Valid;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -13,33 +20,93 @@ import java.util.List;
 public class TeacherController {
     private final TeacherMapper teacherMapper;
     private final TeacherService teacherService;
+    private final CatalogVersionService catalogVersionService;
 
 
     public TeacherController(TeacherService teacherService,
-                             TeacherMapper teacherMapper) {
+                             TeacherMapper teacherMapper,
+                             CatalogVersionService catalogVersionService) {
         this.teacherMapper = teacherMapper;
         this.teacherService = teacherService;
+        this.catalogVersionService = catalogVersionService;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Teacher teacher = this.teacherService.findById(Long.valueOf(id));
+            Long teacherId = Long.valueOf(id);
+            if (request.checkNotModified(this.catalogVersionService.etag(CatalogVersionService.Catalog.TEACHERS, teacherId),
+                    this.catalogVersionService.lastModified(CatalogVersionService.Catalog.TEACHERS))) {
+                return SessionController.notModified();
+            }
+
+            Teacher teacher = this.teacherService.findById(teacherId);
 
             if (teacher == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
+            return ResponseEntity.ok().cacheControl(CatalogVersionService.CACHE_CONTROL).body(this.teacherMapper.toDto(teacher));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
+    public ResponseEntity<?> findAll(WebRequest request) {
+        if (request.checkNotModified(this.catalogVersionService.etag(CatalogVersionService.Catalog.TEACHERS),
+                this.catalogVersionService.lastModified(CatalogVersionService.Catalog.TEACHERS))) {
+            return SessionController.notModified();
+        }
+
         List<Teacher> teachers = this.teacherService.findAll();
 
-        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+        return ResponseEntity.ok().cacheControl(CatalogVersionService.CACHE_CONTROL).body(this.teacherMapper.toDto(teachers));
+    }
+
+    @PostMapping()
+    public ResponseEntity<?> create(@Valid @RequestBody TeacherDto teacherDto) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Teacher teacher = this.teacherService.create(this.teacherMapper.toEntity(teacherDto));
+
+        return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
+    }
+
+    @PutMapping("{id}")
+    public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody TeacherDto teacherDto) {
+        try {
+            if (!isAdmin()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            Teacher teacher = this.teacherService.update(Long.parseLong(id), this.teacherMapper.toEntity(teacherDto));
+
+            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<?> delete(@PathVariable("id") String id) {
+        try {
+            if (!isAdmin()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            this.teacherService.delete(Long.parseLong(id));
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static boolean isAdmin() {
+        UserDetailsImpl currentUser = UserController.currentUser();
+
+        return currentUser != null && Boolean.TRUE.equals(currentUser.getAdmin());
     }
 }
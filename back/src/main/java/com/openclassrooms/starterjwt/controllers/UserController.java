@@ -2,27 +2,46 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.SessionCursor;
+import com.openclassrooms.starterjwt.security.jwt.RevokedTokenIndex;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
 import java.util.Objects;
 
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = SessionController.NEXT_CURSOR_HEADER)
 @RestController
 @RequestMapping("/api/user")
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final RevokedTokenIndex revokedTokenIndex;
+    private final SessionService sessionService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             RevokedTokenIndex revokedTokenIndex,
+                             SessionService sessionService,
+                             @Value("${oc.app.sessionPageDefaultSize:50}") int defaultPageSize,
+                             @Value("${oc.app.sessionPageMaxSize:100}") int maxPageSize) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.revokedTokenIndex = revokedTokenIndex;
+        this.sessionService = sessionService;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @GetMapping("/{id}")
@@ -56,9 +75,69 @@ public class UserController {
             }
 
             this.userService.delete(Long.parseLong(id));
+            this.revokedTokenIndex.revokeUser(user.getId());
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @GetMapping("/me/sessions")
+    public ResponseEntity<?> findMySessions(
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        UserDetailsImpl currentUser = currentUser();
+
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        return findSessions(currentUser.getId(), currentUser.getId(), from, to, cursor, size);
+    }
+
+    // Same paging contract as GET /api/session, limited to the sessions the user has booked.
+    @GetMapping("/{id}/sessions")
+    public ResponseEntity<?> findSessions(
+            @PathVariable("id") String id,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd"}) Date to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        try {
+            Long userId = Long.valueOf(id);
+            UserDetailsImpl currentUser = currentUser();
+
+            if (currentUser == null
+                    || (!Objects.equals(currentUser.getId(), userId) && !Boolean.TRUE.equals(currentUser.getAdmin()))) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            return findSessions(userId, currentUser.getId(), from, to, cursor, size);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private ResponseEntity<?> findSessions(Long userId, Long viewerId, Date from, Date to, String cursor, Integer size) {
+        if (size != null && size < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = Math.min(size != null ? size : this.defaultPageSize, this.maxPageSize);
+        SessionCursor after = cursor != null ? SessionCursor.decode(cursor) : null;
+
+        return SessionController.page(
+                this.sessionService.findPage(from, to, null, userId, viewerId, after, pageSize + 1), pageSize);
+    }
+
+    static UserDetailsImpl currentUser() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+        return principal instanceof UserDetailsImpl ? (UserDetailsImpl) principal : null;
+    }
 }
@@ -0,0 +1,37 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Listing view of a session: a participant count instead of the participant ids, which only
+ * GET /api/session/{id} serves.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSummaryDto {
+    private Long id;
+
+    private String name;
+
+    private Date date;
+
+    private Long teacher_id;
+
+    private String description;
+
+    private Integer capacity;
+
+    private int participantCount;
+
+    private boolean bookedByMe;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
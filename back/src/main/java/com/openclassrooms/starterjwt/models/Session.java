@@ -8,6 +8,7 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -16,7 +17,11 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = {
+    @Index(name = "idx_sessions_date", columnList = "date, id"),
+    @Index(name = "idx_sessions_teacher_date", columnList = "teacher_id, date, id"),
+    @Index(name = "idx_sessions_updated", columnList = "updated_at, id")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -26,8 +31,11 @@ import java.util.List;
 @AllArgsConstructor
 @ToString
 public class Session {
+    // Ids are handed out in blocks from ID_GENERATOR, which lets Hibernate batch inserts (IDENTITY cannot).
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "session_id")
+    @TableGenerator(name = "session_id", table = "ID_GENERATOR", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "SESSIONS", allocationSize = 100)
     private Long id;
 
     @NotBlank
@@ -41,6 +49,12 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
+    @Min(1)
+    private Integer capacity;
+
+    @Column(name = "booked_seats", nullable = false)
+    private int bookedSeats;
+
     @OneToOne
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
@@ -49,7 +63,9 @@ public class Session {
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            uniqueConstraints = @UniqueConstraint(columnNames = {"session_id", "user_id"}),
+            indexes = @Index(name = "idx_participate_user", columnList = "user_id, session_id") )
     private List<User> users;
 
     @CreatedDate
@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "SESSION_DELETIONS", indexes = {
+    @Index(name = "idx_session_deletions_deleted_at", columnList = "deleted_at")
+})
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"sessionId"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class SessionDeletion {
+    @Id
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    @NotNull
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+}
@@ -0,0 +1,41 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque position in the session changes feed: the (updatedAt, id) of the last session returned, and the time the
+ * watermark was issued, from which deletions are reported and which decides its expiry.
+ */
+@Data
+@AllArgsConstructor
+public class SessionWatermark {
+    private Date updatedAt;
+
+    private Long id;
+
+    private Date issuedAt;
+
+    public static SessionWatermark decode(String watermark) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(watermark), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new BadRequestException();
+            }
+            return new SessionWatermark(new Date(Long.parseLong(parts[0])), Long.valueOf(parts[1]),
+                    new Date(Long.parseLong(parts[2])));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+    }
+
+    public String encode() {
+        String value = updatedAt.getTime() + ":" + id + ":" + issuedAt.getTime();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,20 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class BulkSessionResult {
+  private int index;
+  private Long id;
+  private List<String> errors;
+
+  public BulkSessionResult(int index, Long id, List<String> errors) {
+    this.index = index;
+    this.id = id;
+    this.errors = errors;
+  }
+}
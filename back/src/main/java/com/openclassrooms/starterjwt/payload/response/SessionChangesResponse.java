@@ -0,0 +1,25 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class SessionChangesResponse {
+  private List<SessionSummaryDto> sessions;
+  private List<Long> deleted;
+  private String watermark;
+  private boolean hasMore;
+  private boolean reset;
+
+  public SessionChangesResponse(List<SessionSummaryDto> sessions, List<Long> deleted, String watermark, boolean hasMore, boolean reset) {
+    this.sessions = sessions;
+    this.deleted = deleted;
+    this.watermark = watermark;
+    this.hasMore = hasMore;
+    this.reset = reset;
+  }
+}
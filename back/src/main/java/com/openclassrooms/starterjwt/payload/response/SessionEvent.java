@@ -0,0 +1,24 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SessionEvent {
+  public static final String CREATED = "created";
+  public static final String UPDATED = "updated";
+  public static final String DELETED = "deleted";
+  public static final String PARTICIPANT_JOINED = "participant_joined";
+  public static final String PARTICIPANT_LEFT = "participant_left";
+
+  private final String type;
+  private final Long sessionId;
+  private final Long userId;
+
+  public SessionEvent(String type, Long sessionId, Long userId) {
+    this.type = type;
+    this.sessionId = sessionId;
+    this.userId = userId;
+  }
+}
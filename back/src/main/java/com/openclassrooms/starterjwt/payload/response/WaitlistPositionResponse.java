@@ -0,0 +1,17 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+public class WaitlistPositionResponse {
+  private long position;
+
+  public WaitlistPositionResponse(long position) {
+    this.position = position;
+  }
+
+  public long getPosition() {
+    return position;
+  }
+
+  public void setPosition(long position) {
+    this.position = position;
+  }
+}
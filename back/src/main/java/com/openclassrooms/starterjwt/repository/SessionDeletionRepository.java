@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.SessionDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SessionDeletionRepository extends JpaRepository<SessionDeletion, Long> {
+    @Query("SELECT d.sessionId FROM SessionDeletion d WHERE d.deletedAt >= :since ORDER BY d.deletedAt, d.sessionId")
+    List<Long> findSessionIdsDeletedSince(@Param("since") LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO SESSION_DELETIONS (session_id, deleted_at) VALUES (:sessionId, :deletedAt)", nativeQuery = true)
+    int insert(@Param("sessionId") Long sessionId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SessionDeletion d WHERE d.deletedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
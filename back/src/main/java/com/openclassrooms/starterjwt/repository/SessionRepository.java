@@ -1,9 +1,93 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionRepositoryCustom {
+    @Override
+    @EntityGraph(attributePaths = {"teacher", "users"})
+    Optional<Session> findById(Long id);
+
+    @Query(value = "SELECT p.session_id AS sessionId, p.user_id AS userId FROM PARTICIPATE p WHERE p.session_id IN (:sessionIds)", nativeQuery = true)
+    List<ParticipantId> findParticipantIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    // Native id columns come back as Integer or BigInteger depending on the column type, hence Number.
+    @Query(value = "SELECT p.session_id FROM PARTICIPATE p WHERE p.user_id = :userId AND p.session_id IN (:sessionIds)", nativeQuery = true)
+    List<Number> findBookedSessionIds(@Param("userId") Long userId, @Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query(value = "SELECT p.session_id FROM PARTICIPATE p WHERE p.user_id = :userId", nativeQuery = true)
+    List<Number> findBookedSessionIds(@Param("userId") Long userId);
+
+    // updated_at is stamped with the application clock, like every other write of the column: the changes feed
+    // compares it with the application's time, and a database clock running ahead or behind would skip writes.
+    default int reserveSeat(Long sessionId) {
+        return reserveSeat(sessionId, LocalDateTime.now());
+    }
+
+    default int releaseSeat(Long sessionId) {
+        return releaseSeat(sessionId, LocalDateTime.now());
+    }
+
+    default int recountSeats(Long sessionId) {
+        return recountSeats(sessionId, LocalDateTime.now());
+    }
+
+    // Takes a seat only while one is left: concurrent bookings serialize on this single-row update, not on a read lock.
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET booked_seats = booked_seats + 1, updated_at = :updatedAt WHERE id = :sessionId AND (capacity IS NULL OR booked_seats < capacity)", nativeQuery = true)
+    int reserveSeat(@Param("sessionId") Long sessionId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET booked_seats = booked_seats - 1, updated_at = :updatedAt WHERE id = :sessionId AND booked_seats > 0", nativeQuery = true)
+    int releaseSeat(@Param("sessionId") Long sessionId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET booked_seats = (SELECT COUNT(*) FROM PARTICIPATE p WHERE p.session_id = :sessionId), "
+            + "updated_at = :updatedAt WHERE id = :sessionId", nativeQuery = true)
+    int recountSeats(@Param("sessionId") Long sessionId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Inserts nothing when the user does not exist; a second booking violates the primary key.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) SELECT :sessionId, u.id FROM USERS u WHERE u.id = :userId", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    // Used for waitlist promotion, where an existing booking must not fail the surrounding cancellation.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) SELECT :sessionId, u.id FROM USERS u WHERE u.id = :userId "
+            + "AND NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = :sessionId AND p.user_id = :userId)", nativeQuery = true)
+    int addParticipantIfAbsent(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Query(value = "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    long countParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Query("SELECT CASE WHEN s.capacity IS NOT NULL AND s.bookedSeats >= s.capacity THEN true ELSE false END FROM Session s WHERE s.id = :sessionId")
+    Optional<Boolean> isFull(@Param("sessionId") Long sessionId);
+
+    interface ParticipantId {
+        Long getSessionId();
+
+        Long getUserId();
+    }
 }
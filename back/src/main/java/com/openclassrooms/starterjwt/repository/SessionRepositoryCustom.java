@@ -0,0 +1,16 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+public interface SessionRepositoryCustom {
+    List<SessionSummaryDto> findPage(Date from, Date to, Long teacherId, Long participantId, Date afterDate, Long afterId, int limit);
+
+    List<SessionSummaryDto> findChangedSince(LocalDateTime afterUpdatedAt, Long afterId, int limit);
+
+    SessionDto findDtoById(Long id);
+}
@@ -0,0 +1,168 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Read path for session listings. Only the session columns and the teacher id are selected, so neither the
+ * eager participant list nor the teacher row is loaded. Listings carry the booked seat counter as participant
+ * count; for a single session the caller attaches participant ids in one query on PARTICIPATE.
+ */
+public class SessionRepositoryImpl implements SessionRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Keyset pagination on (date, id): the cost is one index range scan of `limit` rows, whatever the offset.
+    // With a participant, the rows come from that user's PARTICIPATE entries instead of the whole catalog.
+    @Override
+    public List<SessionSummaryDto> findPage(Date from, Date to, Long teacherId, Long participantId, Date afterDate, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Session> session = query.from(Session.class);
+        Join<Session, Teacher> teacher = session.join("teacher", JoinType.LEFT);
+        Path<Date> date = session.get("date");
+        Path<Long> id = session.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (from != null) {
+            predicates.add(cb.greaterThanOrEqualTo(date, from));
+        }
+        if (to != null) {
+            predicates.add(cb.lessThan(date, to));
+        }
+        if (teacherId != null) {
+            predicates.add(cb.equal(teacher.get("id"), teacherId));
+        }
+        if (participantId != null) {
+            Join<Session, User> participant = session.join("users");
+            predicates.add(cb.equal(participant.get("id"), participantId));
+        }
+        if (afterDate != null && afterId != null) {
+            predicates.add(cb.or(
+                    cb.greaterThan(date, afterDate),
+                    cb.and(cb.equal(date, afterDate), cb.greaterThan(id, afterId))));
+        }
+
+        List<Selection<?>> selection = selection(session, teacher);
+        selection.add(session.get("bookedSeats"));
+        query.multiselect(selection)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(date), cb.asc(id));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(SessionRepositoryImpl::toSummaryDto)
+                .collect(Collectors.toList());
+    }
+
+    // Keyset on (updatedAt, id), served by idx_sessions_updated; a null position starts from the oldest write.
+    @Override
+    public List<SessionSummaryDto> findChangedSince(LocalDateTime afterUpdatedAt, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Session> session = query.from(Session.class);
+        Join<Session, Teacher> teacher = session.join("teacher", JoinType.LEFT);
+        Path<LocalDateTime> updatedAt = session.get("updatedAt");
+        Path<Long> id = session.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (afterUpdatedAt != null && afterId != null) {
+            predicates.add(cb.or(
+                    cb.greaterThan(updatedAt, afterUpdatedAt),
+                    cb.and(cb.equal(updatedAt, afterUpdatedAt), cb.greaterThan(id, afterId))));
+        }
+
+        List<Selection<?>> selection = selection(session, teacher);
+        selection.add(session.get("bookedSeats"));
+        query.multiselect(selection)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(updatedAt), cb.asc(id));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(SessionRepositoryImpl::toSummaryDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public SessionDto findDtoById(Long id) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Session> session = query.from(Session.class);
+        Join<Session, Teacher> teacher = session.join("teacher", JoinType.LEFT);
+
+        query.multiselect(selection(session, teacher))
+                .where(cb.equal(session.get("id"), id));
+
+        return entityManager.createQuery(query)
+                .getResultList()
+                .stream()
+                .findFirst()
+                .map(SessionRepositoryImpl::toDto)
+                .orElse(null);
+    }
+
+    private static List<Selection<?>> selection(Root<Session> session, Join<Session, Teacher> teacher) {
+        List<Selection<?>> selection = new ArrayList<>();
+        selection.add(session.get("id"));
+        selection.add(session.get("name"));
+        selection.add(session.get("date"));
+        selection.add(teacher.get("id"));
+        selection.add(session.get("description"));
+        selection.add(session.get("capacity"));
+        selection.add(session.get("createdAt"));
+        selection.add(session.get("updatedAt"));
+        return selection;
+    }
+
+    private static SessionSummaryDto toSummaryDto(Tuple row) {
+        return new SessionSummaryDto(
+                row.get(0, Long.class),
+                row.get(1, String.class),
+                row.get(2, Date.class),
+                row.get(3, Long.class),
+                row.get(4, String.class),
+                row.get(5, Integer.class),
+                row.get(8, Integer.class),
+                false,
+                row.get(6, LocalDateTime.class),
+                row.get(7, LocalDateTime.class));
+    }
+
+    private static SessionDto toDto(Tuple row) {
+        return new SessionDto(
+                row.get(0, Long.class),
+                row.get(1, String.class),
+                row.get(2, Date.class),
+                row.get(3, Long.class),
+                row.get(4, String.class),
+                row.get(5, Integer.class),
+                null,
+                row.get(6, LocalDateTime.class),
+                row.get(7, LocalDateTime.class));
+    }
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+    // Head of the queue: a single seek on (session_id, id).
+    Optional<WaitlistEntry> findFirstBySessionIdOrderByIdAsc(Long sessionId);
+
+    // Inserts nothing when the user does not exist; joining twice violates the unique constraint.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO WAITLIST (session_id, user_id, created_at) SELECT :sessionId, u.id, CURRENT_TIMESTAMP FROM USERS u WHERE u.id = :userId", nativeQuery = true)
+    int join(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM WAITLIST WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int leave(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM WAITLIST WHERE id = :id", nativeQuery = true)
+    int remove(@Param("id") Long id);
+
+    // 1-based position, 0 when the user is not waiting. The count walks the (session_id, id) index entries ahead of
+    // the user without reading any row, so it costs O(position), not O(log n): InnoDB keeps no per-subtree counts,
+    // and a stored rank would have to be rewritten for everyone behind on each promotion or departure.
+    @Query(value = "SELECT COUNT(*) FROM WAITLIST w WHERE w.session_id = :sessionId AND w.id <= "
+            + "(SELECT x.id FROM WAITLIST x WHERE x.session_id = :sessionId AND x.user_id = :userId)", nativeQuery = true)
+    long findPosition(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+}
@@ -1,6 +1,10 @@
 package com.openclassrooms.starterjwt.security;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -13,10 +17,18 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.cors.CorsUtils;
 
+import com.openclassrooms.starterjwt.security.crypto.BCryptStrengthCalibrator;
+import com.openclassrooms.starterjwt.security.crypto.PooledPasswordEncoder;
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
-import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.services.CachedUserDetailsService;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 @EnableWebSecurity
@@ -25,15 +37,43 @@ import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
     // jsr250Enabled = true,
     prePostEnabled = true)
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
+  static final String[] PUBLIC_PATHS = { "/api/auth/**" };
+
+  static final String STREAM_PATH = "/api/session/stream";
+
   @Autowired
-  UserDetailsServiceImpl userDetailsService;
+  CachedUserDetailsService userDetailsService;
 
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${oc.app.passwordHashThreads:0}")
+  private int passwordHashThreads;
+
+  @Value("${oc.app.passwordHashQueueCapacity:64}")
+  private int passwordHashQueueCapacity;
+
+  @Value("${oc.app.passwordHashRetryAfterSeconds:1}")
+  private long passwordHashRetryAfterSeconds;
+
+  @Value("${oc.app.bcryptTargetMs:0}")
+  private long bcryptTargetMs;
+
+  @Value("${oc.app.bcryptMinStrength:10}")
+  private int bcryptMinStrength;
+
+  @Value("${oc.app.bcryptMaxStrength:14}")
+  private int bcryptMaxStrength;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
-    return new AuthTokenFilter();
+    AuthTokenFilter filter = new AuthTokenFilter();
+    filter.setSkipRequestMatcher(publicRequestMatcher());
+    filter.setStreamRequestMatcher(new AntPathRequestMatcher(STREAM_PATH, "GET"));
+    return filter;
   }
 
   @Override
@@ -49,7 +89,10 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    int threads = passwordHashThreads > 0 ? passwordHashThreads : Runtime.getRuntime().availableProcessors();
+    int strength = BCryptStrengthCalibrator.calibrate(bcryptTargetMs, bcryptMinStrength, bcryptMaxStrength);
+    return new PooledPasswordEncoder(new BCryptPasswordEncoder(strength), threads, passwordHashQueueCapacity,
+        passwordHashRetryAfterSeconds, meterRegistry);
   }
 
   @Override
@@ -57,10 +100,20 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     http.cors().and().csrf().disable()
       .exceptionHandling().authenticationEntryPoint(unauthorizedHandler).and()
       .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
-      .authorizeRequests().antMatchers("/api/auth/**").permitAll()
+      .authorizeRequests().antMatchers(PUBLIC_PATHS).permitAll()
       .antMatchers("/api/**").authenticated()
       .anyRequest().authenticated();
 
     http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
   }
+
+  // Requests that never need a principal: the JWT filter skips them without even reading the header.
+  public static RequestMatcher publicRequestMatcher() {
+    List<RequestMatcher> matchers = new ArrayList<>();
+    matchers.add(CorsUtils::isPreFlightRequest);
+    for (String path : PUBLIC_PATHS) {
+      matchers.add(new AntPathRequestMatcher(path));
+    }
+    return new OrRequestMatcher(matchers);
+  }
 }
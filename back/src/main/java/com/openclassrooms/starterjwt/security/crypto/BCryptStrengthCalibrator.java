@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+public final class BCryptStrengthCalibrator {
+  private static final Logger logger = LoggerFactory.getLogger(BCryptStrengthCalibrator.class);
+
+  private static final String SAMPLE_PASSWORD = "calibration-password";
+
+  private BCryptStrengthCalibrator() {
+  }
+
+  /**
+   * Returns the highest strength in [minStrength, maxStrength] whose hash time on this machine stays within
+   * targetMs. Each strength step doubles the work, so one measurement at minStrength is enough to extrapolate.
+   */
+  public static int calibrate(long targetMs, int minStrength, int maxStrength) {
+    if (targetMs <= 0) {
+      return minStrength;
+    }
+
+    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(minStrength);
+    encoder.encode(SAMPLE_PASSWORD);
+
+    long start = System.nanoTime();
+    encoder.encode(SAMPLE_PASSWORD);
+    long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+    int strength = strengthFor(targetMs, elapsedMs, minStrength, maxStrength);
+    logger.info("BCrypt strength {} selected: strength {} hashed in {} ms, target is {} ms",
+        strength, minStrength, elapsedMs, targetMs);
+    return strength;
+  }
+
+  static int strengthFor(long targetMs, long minStrengthMs, int minStrength, int maxStrength) {
+    int strength = minStrength;
+    long expectedMs = minStrengthMs;
+    while (strength < maxStrength && expectedMs * 2 <= targetMs) {
+      expectedMs *= 2;
+      strength++;
+    }
+    return strength;
+  }
+}
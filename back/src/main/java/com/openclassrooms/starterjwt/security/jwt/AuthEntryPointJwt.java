@@ -1,8 +1,6 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -15,29 +13,48 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 
 @Component
 public class AuthEntryPointJwt implements AuthenticationEntryPoint {
 
   private static final Logger logger = LoggerFactory.getLogger(AuthEntryPointJwt.class);
 
+  // Thread-safe and reused for every 401, field names are encoded once.
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final SerializedString STATUS = new SerializedString("status");
+
+  private static final SerializedString ERROR = new SerializedString("error");
+
+  private static final SerializedString MESSAGE = new SerializedString("message");
+
+  private static final SerializedString PATH = new SerializedString("path");
+
+  private static final SerializedString UNAUTHORIZED = new SerializedString("Unauthorized");
+
   @Override
   public void commence(HttpServletRequest request, HttpServletResponse response, AuthenticationException authException)
       throws IOException, ServletException {
-    logger.error("Unauthorized error: {}", authException.getMessage());
+    logger.debug("Unauthorized error: {}", authException.getMessage());
 
     response.setContentType(MediaType.APPLICATION_JSON_VALUE);
     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
 
-    final Map<String, Object> body = new HashMap<>();
-    body.put("status", HttpServletResponse.SC_UNAUTHORIZED);
-    body.put("error", "Unauthorized");
-    body.put("message", authException.getMessage());
-    body.put("path", request.getServletPath());
-
-    final ObjectMapper mapper = new ObjectMapper();
-    mapper.writeValue(response.getOutputStream(), body);
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(response.getOutputStream())) {
+      generator.writeStartObject();
+      generator.writeFieldName(STATUS);
+      generator.writeNumber(HttpServletResponse.SC_UNAUTHORIZED);
+      generator.writeFieldName(ERROR);
+      generator.writeString(UNAUTHORIZED);
+      generator.writeFieldName(MESSAGE);
+      generator.writeString(authException.getMessage());
+      generator.writeFieldName(PATH);
+      generator.writeString(request.getServletPath());
+      generator.writeEndObject();
+    }
   }
 
 }
@@ -10,33 +10,85 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.services.CachedUserDetailsService;
+
+import io.jsonwebtoken.Claims;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
+  static final String CLAIMS_PRINCIPAL_MODE = "claims";
+
+  public static final String STREAM_TOKEN_PARAMETER = "token";
+
   @Autowired
   private JwtUtils jwtUtils;
 
   @Autowired
-  private UserDetailsServiceImpl userDetailsService;
+  private CachedUserDetailsService userDetailsService;
+
+  @Autowired
+  private JwtFailureMonitor jwtFailureMonitor;
+
+  @Autowired
+  private RevokedTokenIndex revokedTokenIndex;
+
+  @Value("${oc.app.jwtPrincipalMode:database}")
+  private String principalMode;
+
+  private RequestMatcher skipRequestMatcher;
+
+  private RequestMatcher streamRequestMatcher;
 
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+  public void setSkipRequestMatcher(RequestMatcher skipRequestMatcher) {
+    this.skipRequestMatcher = skipRequestMatcher;
+  }
+
+  // Requests that may authenticate with a stream token in the query string when they carry no Authorization header.
+  public void setStreamRequestMatcher(RequestMatcher streamRequestMatcher) {
+    this.streamRequestMatcher = streamRequestMatcher;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return skipRequestMatcher != null && skipRequestMatcher.matches(request);
+  }
+
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
+      Claims claims = null;
+      if (jwt != null) {
+        claims = jwtUtils.getClaimsFromJwtToken(jwt);
+      } else if (streamRequestMatcher != null && streamRequestMatcher.matches(request)) {
+        String streamToken = request.getParameter(STREAM_TOKEN_PARAMETER);
+        claims = streamToken != null ? jwtUtils.getClaimsFromStreamToken(streamToken) : null;
+      }
+      if (claims != null && revokedTokenIndex.isRevoked(claims)) {
+        jwtFailureMonitor.record(JwtFailure.REVOKED, "Token " + claims.getId() + " has been revoked");
+        claims = null;
+      }
+      if (claims != null) {
+        UserDetails userDetails = null;
+        if (CLAIMS_PRINCIPAL_MODE.equals(principalMode)) {
+          userDetails = jwtUtils.getUserDetailsFromClaims(claims);
+        }
+        if (userDetails == null) {
+          userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -46,6 +98,8 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
       }
+    } catch (UsernameNotFoundException e) {
+      jwtFailureMonitor.record(JwtFailure.UNKNOWN_USER, e.getMessage());
     } catch (Exception e) {
       logger.error("Cannot set user authentication: {}", e);
     }
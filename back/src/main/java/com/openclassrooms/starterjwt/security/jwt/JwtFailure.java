@@ -0,0 +1,21 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+public enum JwtFailure {
+  EXPIRED("expired"),
+  BAD_SIGNATURE("bad_signature"),
+  MALFORMED("malformed"),
+  UNSUPPORTED("unsupported"),
+  EMPTY("empty"),
+  UNKNOWN_USER("unknown_user"),
+  REVOKED("revoked");
+
+  private final String tag;
+
+  JwtFailure(String tag) {
+    this.tag = tag;
+  }
+
+  public String getTag() {
+    return tag;
+  }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts rejected tokens per {@link JwtFailure} and logs at most one sample per failure type and interval, with
+ * the number of failures suppressed since the previous sample. A burst of expired tokens from stale tabs then
+ * costs a counter increment instead of a log line each.
+ */
+@Component
+public class JwtFailureMonitor {
+  private static final Logger logger = LoggerFactory.getLogger(JwtFailureMonitor.class);
+
+  private final Map<JwtFailure, Sampler> samplers = new EnumMap<>(JwtFailure.class);
+
+  private final long logIntervalMs;
+
+  public JwtFailureMonitor(@Value("${oc.app.jwtFailureLogIntervalMs:10000}") long logIntervalMs,
+      MeterRegistry meterRegistry) {
+    this.logIntervalMs = logIntervalMs;
+    for (JwtFailure failure : JwtFailure.values()) {
+      samplers.put(failure,
+          new Sampler(Counter.builder("jwt.rejected").tag("reason", failure.getTag()).register(meterRegistry)));
+    }
+  }
+
+  public void record(JwtFailure failure, String message) {
+    Sampler sampler = samplers.get(failure);
+    sampler.counter.increment();
+
+    long now = System.currentTimeMillis();
+    long nextLogAt = sampler.nextLogAt.get();
+    if (now >= nextLogAt && sampler.nextLogAt.compareAndSet(nextLogAt, now + logIntervalMs)) {
+      logger.warn("JWT rejected ({}): {} [{} similar rejections not logged]",
+          failure.getTag(), message, sampler.suppressed.sumThenReset());
+    } else {
+      sampler.suppressed.increment();
+    }
+  }
+
+  public double count(JwtFailure failure) {
+    return samplers.get(failure).counter.count();
+  }
+
+  private static final class Sampler {
+    private final Counter counter;
+
+    private final AtomicLong nextLogAt = new AtomicLong();
+
+    private final LongAdder suppressed = new LongAdder();
+
+    private Sampler(Counter counter) {
+      this.counter = counter;
+    }
+  }
+}
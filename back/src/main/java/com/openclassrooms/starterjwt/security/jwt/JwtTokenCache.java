@@ -0,0 +1,139 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+
+/**
+ * Keeps the claims of tokens whose signature has already been verified, so that a client sending the same
+ * token on every call only pays for the HMAC check once. Entries are keyed by a SHA-256 digest of the token
+ * and dropped as soon as the token itself expires. Cached claims are read-only copies, since every request
+ * presenting the token gets the same instance; a full cache is trimmed by a quarter at a time by a single thread,
+ * so a stream of new tokens pays for one scan every few thousand misses rather than one per miss.
+ */
+@Component
+public class JwtTokenCache {
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  @Value("${oc.app.jwtCacheMaxSize:10000}")
+  private int maxSize;
+
+  public Claims get(String token) {
+    String key = digest(token);
+    Entry entry = entries.get(key);
+
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    if (entry.isExpired(System.currentTimeMillis())) {
+      entries.remove(key, entry);
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    return entry.claims;
+  }
+
+  /**
+   * Caches the claims of a verified token and returns the read-only copy that later lookups will share.
+   */
+  public Claims put(String token, Claims claims) {
+    Claims snapshot = new DefaultClaims(Collections.unmodifiableMap(new LinkedHashMap<>(claims)));
+    if (maxSize <= 0) {
+      return snapshot;
+    }
+
+    Date expiration = snapshot.getExpiration();
+    long expiresAt = expiration != null ? expiration.getTime() : Long.MAX_VALUE;
+
+    // While another thread evicts, the cache may briefly overshoot by the tokens inserted concurrently.
+    if (entries.size() >= maxSize && evicting.compareAndSet(false, true)) {
+      try {
+        evict();
+      } finally {
+        evicting.set(false);
+      }
+    }
+
+    entries.put(digest(token), new Entry(snapshot, expiresAt));
+    return snapshot;
+  }
+
+  public void invalidateAll() {
+    entries.clear();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void evict() {
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(entry -> entry.isExpired(now));
+
+    // Still above the low-water mark with live tokens: drop arbitrary entries, they will simply be verified again
+    // on next use.
+    int target = maxSize - Math.max(1, maxSize / 4);
+    Iterator<String> keys = entries.keySet().iterator();
+    while (entries.size() > target && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+    }
+  }
+
+  private static String digest(String token) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static final class Entry {
+    private final Claims claims;
+
+    private final long expiresAt;
+
+    private Entry(Claims claims, long expiresAt) {
+      this.claims = claims;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isExpired(long now) {
+      return now >= expiresAt;
+    }
+  }
+}
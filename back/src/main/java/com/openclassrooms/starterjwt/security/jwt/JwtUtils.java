@@ -1,9 +1,14 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.security.Key;
 import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import javax.annotation.PostConstruct;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -11,10 +16,23 @@ import org.springframework.stereotype.Component;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class JwtUtils {
-  private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+  static final String ID_CLAIM = "id";
+
+  static final String FIRST_NAME_CLAIM = "firstName";
+
+  static final String LAST_NAME_CLAIM = "lastName";
+
+  static final String ADMIN_CLAIM = "admin";
+
+  static final String TOKEN_TYPE_CLAIM = "type";
+
+  static final String REFRESH_TOKEN_TYPE = "refresh";
+
+  static final String STREAM_TOKEN_TYPE = "stream";
 
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
@@ -22,38 +40,149 @@ public class JwtUtils {
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Value("${oc.app.jwtRefreshExpirationMs:604800000}")
+  private long jwtRefreshExpirationMs;
+
+  @Value("${oc.app.sessionStreamTokenExpirationMs:60000}")
+  private long streamTokenExpirationMs;
+
+  @Autowired
+  private JwtTokenCache jwtTokenCache;
+
+  @Autowired
+  private JwtFailureMonitor jwtFailureMonitor;
+
+  private Key signingKey;
+
+  private JwtParser jwtParser;
+
+  @PostConstruct
+  void init() {
+    // Same base64 decoding jjwt applies to a String secret, done once instead of on every parse.
+    signingKey = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SignatureAlgorithm.HS512.getJcaName());
+    jwtParser = Jwts.parser().setSigningKey(signingKey);
+  }
+
   public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
+
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    return principalToken(userPrincipal, jwtExpirationMs).compact();
+  }
+
+  // EventSource cannot send an Authorization header, so the session stream takes this token as a query parameter
+  // instead. It is only accepted there, and expires within a minute since URLs end up in access logs.
+  public String generateStreamToken(UserDetailsImpl userPrincipal) {
+    return principalToken(userPrincipal, streamTokenExpirationMs)
+        .claim(TOKEN_TYPE_CLAIM, STREAM_TOKEN_TYPE)
+        .compact();
+  }
+
+  public long getStreamTokenExpirationMs() {
+    return streamTokenExpirationMs;
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  private JwtBuilder principalToken(UserDetailsImpl userPrincipal, long expirationMs) {
+    return Jwts.builder()
+        .setId(UUID.randomUUID().toString())
+        .setSubject((userPrincipal.getUsername()))
+        .claim(ID_CLAIM, userPrincipal.getId())
+        .claim(FIRST_NAME_CLAIM, userPrincipal.getFirstName())
+        .claim(LAST_NAME_CLAIM, userPrincipal.getLastName())
+        .claim(ADMIN_CLAIM, Boolean.TRUE.equals(userPrincipal.getAdmin()))
+        .setIssuedAt(new Date())
+        .setExpiration(new Date((new Date()).getTime() + expirationMs))
+        .signWith(SignatureAlgorithm.HS512, signingKey);
+  }
 
+  public String generateRefreshToken(UserDetailsImpl userPrincipal) {
     return Jwts.builder()
+        .setId(UUID.randomUUID().toString())
         .setSubject((userPrincipal.getUsername()))
+        .claim(ID_CLAIM, userPrincipal.getId())
+        .claim(TOKEN_TYPE_CLAIM, REFRESH_TOKEN_TYPE)
         .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
+        .setExpiration(new Date((new Date()).getTime() + jwtRefreshExpirationMs))
+        .signWith(SignatureAlgorithm.HS512, signingKey)
         .compact();
   }
 
+  public long getRefreshExpirationMs() {
+    return jwtRefreshExpirationMs;
+  }
+
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return jwtParser.parseClaimsJws(token).getBody().getSubject();
+  }
+
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Object id = claims.get(ID_CLAIM);
+    if (!(id instanceof Number)) {
+      // Token issued before the profile claims were added.
+      return null;
+    }
+
+    return UserDetailsImpl
+            .builder()
+            .id(((Number) id).longValue())
+            .username(claims.getSubject())
+            .firstName(claims.get(FIRST_NAME_CLAIM, String.class))
+            .lastName(claims.get(LAST_NAME_CLAIM, String.class))
+            .admin(Boolean.TRUE.equals(claims.get(ADMIN_CLAIM, Boolean.class)))
+            .build();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return getClaimsFromJwtToken(authToken) != null;
+  }
+
+  public Claims getClaimsFromJwtToken(String authToken) {
+    return parseClaims(authToken, null);
+  }
+
+  public Claims getClaimsFromRefreshToken(String refreshToken) {
+    return parseClaims(refreshToken, REFRESH_TOKEN_TYPE);
+  }
+
+  public Claims getClaimsFromStreamToken(String streamToken) {
+    return parseClaims(streamToken, STREAM_TOKEN_TYPE);
+  }
+
+  // Access tokens carry no type claim; every other kind is only accepted where its type is expected.
+  private Claims parseClaims(String token, String expectedType) {
+    Claims claims = parseClaims(token);
+    Object type = claims != null ? claims.get(TOKEN_TYPE_CLAIM) : null;
+    if (claims != null && !Objects.equals(expectedType, type)) {
+      jwtFailureMonitor.record(JwtFailure.UNSUPPORTED, (type != null ? type : "access") + " token used as "
+          + (expectedType != null ? expectedType : "access") + " token");
+      return null;
+    }
+    return claims;
+  }
+
+  private Claims parseClaims(String authToken) {
+    if (authToken != null && !authToken.isEmpty()) {
+      Claims cached = jwtTokenCache.get(authToken);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return jwtTokenCache.put(authToken, jwtParser.parseClaimsJws(authToken).getBody());
     } catch (SignatureException e) {
-      logger.error("Invalid JWT signature: {}", e.getMessage());
+      jwtFailureMonitor.record(JwtFailure.BAD_SIGNATURE, e.getMessage());
     } catch (MalformedJwtException e) {
-      logger.error("Invalid JWT token: {}", e.getMessage());
+      jwtFailureMonitor.record(JwtFailure.MALFORMED, e.getMessage());
     } catch (ExpiredJwtException e) {
-      logger.error("JWT token is expired: {}", e.getMessage());
+      jwtFailureMonitor.record(JwtFailure.EXPIRED, e.getMessage());
     } catch (UnsupportedJwtException e) {
-      logger.error("JWT token is unsupported: {}", e.getMessage());
+      jwtFailureMonitor.record(JwtFailure.UNSUPPORTED, e.getMessage());
     } catch (IllegalArgumentException e) {
-      logger.error("JWT claims string is empty: {}", e.getMessage());
+      jwtFailureMonitor.record(JwtFailure.EMPTY, e.getMessage());
     }
 
-    return false;
+    return null;
   }
 }
@@ -0,0 +1,122 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * In-memory view of the REVOKED_TOKENS table. A Bloom filter answers the common "not revoked" case without a
+ * query; only a positive (a revoked token, or a rare false positive) is confirmed against the table. Besides
+ * single token ids, a "user:{id}" entry revokes every token of that user issued before its revocation time.
+ */
+@Component
+public class RevokedTokenIndex {
+  private static final Logger logger = LoggerFactory.getLogger(RevokedTokenIndex.class);
+
+  private static final String USER_KEY_PREFIX = "user:";
+
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.001;
+
+  private final RevokedTokenRepository revokedTokenRepository;
+
+  private final int expectedRevocations;
+
+  private final long refreshExpirationMs;
+
+  private final AtomicInteger insertions = new AtomicInteger();
+
+  private volatile BloomFilter bloomFilter;
+
+  public RevokedTokenIndex(RevokedTokenRepository revokedTokenRepository,
+      @Value("${oc.app.revokedTokenExpectedCount:100000}") int expectedRevocations,
+      @Value("${oc.app.jwtRefreshExpirationMs:604800000}") long refreshExpirationMs) {
+    this.revokedTokenRepository = revokedTokenRepository;
+    this.expectedRevocations = expectedRevocations;
+    this.refreshExpirationMs = refreshExpirationMs;
+  }
+
+  @PostConstruct
+  public synchronized void rebuild() {
+    LocalDateTime now = LocalDateTime.now();
+    revokedTokenRepository.deleteExpired(now);
+    List<String> tokenIds = revokedTokenRepository.findActiveTokenIds(now);
+
+    BloomFilter filter = new BloomFilter(Math.max(expectedRevocations, tokenIds.size() * 2), FALSE_POSITIVE_PROBABILITY);
+    tokenIds.forEach(filter::put);
+
+    bloomFilter = filter;
+    insertions.set(tokenIds.size());
+    logger.info("Revoked token index rebuilt with {} entries", tokenIds.size());
+  }
+
+  public boolean isRevoked(Claims claims) {
+    BloomFilter filter = bloomFilter;
+
+    String tokenId = claims.getId();
+    if (tokenId != null && filter.mightContain(tokenId) && revokedTokenRepository.existsById(tokenId)) {
+      return true;
+    }
+
+    Object userId = claims.get(JwtUtils.ID_CLAIM);
+    if (userId instanceof Number) {
+      String userKey = USER_KEY_PREFIX + ((Number) userId).longValue();
+      if (filter.mightContain(userKey)) {
+        Date issuedAt = claims.getIssuedAt();
+        return revokedTokenRepository.findById(userKey)
+            .map(revoked -> issuedAt == null || !issuedAt.toInstant().isAfter(toInstant(revoked.getRevokedAt())))
+            .orElse(false);
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns false when the token id was already revoked, which lets callers detect a refresh token replay.
+   */
+  public boolean revoke(String tokenId, Date expiresAt) {
+    LocalDateTime expiry = expiresAt != null
+        ? LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault())
+        : LocalDateTime.now().plusNanos(refreshExpirationMs * 1_000_000);
+    return add(tokenId, expiry);
+  }
+
+  public void revokeUser(Long userId) {
+    add(USER_KEY_PREFIX + userId, LocalDateTime.now().plusNanos(refreshExpirationMs * 1_000_000));
+  }
+
+  private boolean add(String key, LocalDateTime expiresAt) {
+    try {
+      revokedTokenRepository.insert(key, LocalDateTime.now(), expiresAt);
+    } catch (DataIntegrityViolationException e) {
+      return false;
+    }
+
+    synchronized (this) {
+      bloomFilter.put(key);
+    }
+    if (insertions.incrementAndGet() > bloomFilter.getCapacity()) {
+      rebuild();
+    }
+    return true;
+  }
+
+  private static Instant toInstant(LocalDateTime dateTime) {
+    return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+  }
+}
@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+public class LoginRateLimiter {
+  private final RateLimiter byEmail;
+
+  private final RateLimiter byClientIp;
+
+  private final Counter rejectedByEmail;
+
+  private final Counter rejectedByClientIp;
+
+  public LoginRateLimiter(@Value("${oc.app.loginAttemptsPerMinutePerEmail:10}") int attemptsPerEmail,
+      @Value("${oc.app.loginAttemptsPerMinutePerIp:60}") int attemptsPerClientIp,
+      @Value("${oc.app.loginRateLimitMaxKeys:100000}") int maxKeys,
+      MeterRegistry meterRegistry) {
+    this.byEmail = new RateLimiter(attemptsPerEmail, maxKeys);
+    this.byClientIp = new RateLimiter(attemptsPerClientIp, maxKeys);
+    this.rejectedByEmail = Counter.builder("login.rate.limited").tag("key", "email").register(meterRegistry);
+    this.rejectedByClientIp = Counter.builder("login.rate.limited").tag("key", "ip").register(meterRegistry);
+  }
+
+  public void checkLoginAttempt(String email, String clientIp) {
+    long now = System.nanoTime();
+
+    long wait = byClientIp.tryAcquire(clientIp, now);
+    if (wait > 0) {
+      rejectedByClientIp.increment();
+      throw new TooManyRequestsException(toRetryAfterSeconds(wait));
+    }
+
+    wait = byEmail.tryAcquire(email.toLowerCase(Locale.ROOT), now);
+    if (wait > 0) {
+      rejectedByEmail.increment();
+      throw new TooManyRequestsException(toRetryAfterSeconds(wait));
+    }
+  }
+
+  private static long toRetryAfterSeconds(long waitNanos) {
+    return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+  }
+}
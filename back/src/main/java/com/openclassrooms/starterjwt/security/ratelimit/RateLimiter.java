@@ -0,0 +1,128 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket per key, stored as a single "theoretical arrival time" (GCRA) updated by CAS, so an attempt is one
+ * map lookup plus one compare-and-set. Keys are spread over independent stripes; a stripe that reaches its share
+ * of maxKeys drops its idle keys (buckets that have refilled completely, which carry no state) and nothing else:
+ * forgetting a live bucket would hand a throttled key a fresh burst. While a stripe stays congested, new keys are
+ * rejected until its next bucket goes idle, without scanning again, and only one thread at a time scans a stripe.
+ */
+class RateLimiter {
+  private static final int STRIPES = 16;
+
+  private final long emissionIntervalNanos;
+
+  private final long burstToleranceNanos;
+
+  private final int maxKeysPerStripe;
+
+  private final int evictionTarget;
+
+  private final Map<String, AtomicLong>[] stripes;
+
+  private final AtomicBoolean[] evicting;
+
+  // Per stripe, the time before which no bucket goes idle: a congested stripe is not scanned again until then.
+  private final AtomicLong[] congestedUntil;
+
+  private final LongAdder evictions = new LongAdder();
+
+  @SuppressWarnings("unchecked")
+  RateLimiter(int permitsPerMinute, int maxKeys) {
+    this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, permitsPerMinute);
+    this.burstToleranceNanos = emissionIntervalNanos * (Math.max(1, permitsPerMinute) - 1);
+    this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+    this.evictionTarget = maxKeysPerStripe - Math.max(1, maxKeysPerStripe / 4);
+    this.stripes = new Map[STRIPES];
+    this.evicting = new AtomicBoolean[STRIPES];
+    this.congestedUntil = new AtomicLong[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ConcurrentHashMap<>();
+      evicting[i] = new AtomicBoolean();
+      congestedUntil[i] = new AtomicLong(Long.MIN_VALUE);
+    }
+  }
+
+  /**
+   * Returns 0 when the attempt is allowed, otherwise the number of nanoseconds until the next one would be.
+   */
+  long tryAcquire(String key, long now) {
+    int index = (key.hashCode() & 0x7fffffff) % STRIPES;
+    Map<String, AtomicLong> stripe = stripes[index];
+
+    AtomicLong arrival = stripe.get(key);
+    if (arrival == null) {
+      if (stripe.size() >= maxKeysPerStripe) {
+        long wait = makeRoom(index, now);
+        if (wait > 0) {
+          return wait;
+        }
+      }
+      arrival = stripe.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    while (true) {
+      long current = arrival.get();
+      long theoretical = Math.max(current, now);
+      long wait = theoretical - burstToleranceNanos - now;
+      if (wait > 0) {
+        return wait;
+      }
+      if (arrival.compareAndSet(current, theoretical + emissionIntervalNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Map<String, AtomicLong> stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  int evictions() {
+    return evictions.intValue();
+  }
+
+  /**
+   * Returns 0 when a new key may be added to the full stripe, otherwise the number of nanoseconds until one of
+   * its buckets goes idle.
+   */
+  private long makeRoom(int index, long now) {
+    long until = congestedUntil[index].get();
+    if (now < until) {
+      return until - now;
+    }
+    // While another thread evicts, the stripe may briefly overshoot by the keys inserted concurrently.
+    if (!evicting[index].compareAndSet(false, true)) {
+      return 0;
+    }
+    try {
+      Map<String, AtomicLong> stripe = stripes[index];
+      evictions.increment();
+      stripe.values().removeIf(arrival -> arrival.get() <= now);
+
+      // Too few idle buckets to leave headroom: remember when the next one frees up rather than rescanning for
+      // every new key until then.
+      if (stripe.size() > evictionTarget) {
+        long earliest = Long.MAX_VALUE;
+        for (AtomicLong arrival : stripe.values()) {
+          earliest = Math.min(earliest, arrival.get());
+        }
+        congestedUntil[index].set(earliest);
+      }
+      return stripe.size() < maxKeysPerStripe ? 0 : Math.max(1, congestedUntil[index].get() - now);
+    } finally {
+      evicting[index].set(false);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Size and TTL bounded cache in front of {@link UserDetailsServiceImpl}, keyed by email. Concurrent misses for
+ * the same email share a single load. Entries are evicted by {@link UserDetailsCacheEvictionListener} whenever
+ * a user row is updated or deleted, once the change is committed.
+ */
+@Service
+public class CachedUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+  private final UserDetailsServiceImpl delegate;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  private final Timer loadTimer;
+
+  @Value("${oc.app.userDetailsCacheMaxSize:10000}")
+  private int maxSize;
+
+  @Value("${oc.app.userDetailsCacheTtlMs:60000}")
+  private long ttlMs;
+
+  CachedUserDetailsService(UserDetailsServiceImpl delegate, MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.hits = Counter.builder("user.details.cache.requests").tag("result", "hit").register(meterRegistry);
+    this.misses = Counter.builder("user.details.cache.requests").tag("result", "miss").register(meterRegistry);
+    this.loadTimer = Timer.builder("user.details.cache.load").register(meterRegistry);
+    Gauge.builder("user.details.cache.size", entries, Map::size).register(meterRegistry);
+    Gauge.builder("user.details.cache.hit.ratio", this, CachedUserDetailsService::getHitRatio).register(meterRegistry);
+  }
+
+  @Override
+  public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    if (maxSize <= 0) {
+      return loadTimer.record(() -> delegate.loadUserByUsername(username));
+    }
+
+    long now = System.currentTimeMillis();
+    Entry loading = new Entry(new CompletableFuture<>(), now + ttlMs);
+    Entry current = entries.compute(username, (key, entry) -> entry != null && !entry.isExpired(now) ? entry : loading);
+
+    if (current != loading) {
+      hits.increment();
+      return await(current.details);
+    }
+
+    misses.increment();
+    if (entries.size() > maxSize) {
+      evictOverflow();
+    }
+
+    try {
+      UserDetails details = loadTimer.record(() -> delegate.loadUserByUsername(username));
+      loading.details.complete(details);
+      return details;
+    } catch (RuntimeException e) {
+      entries.remove(username, loading);
+      loading.details.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  @Override
+  public UserDetails updatePassword(UserDetails user, String newPassword) {
+    UserDetails updated = delegate.updatePassword(user, newPassword);
+    evict(user.getUsername());
+    return updated;
+  }
+
+  public void evict(String username) {
+    entries.remove(username);
+  }
+
+  public void evictById(Long id) {
+    // A load still in flight may have read the row before the change and its email is not known yet, so it is
+    // dropped too: its callers still get their result, but nothing it read stays cached.
+    entries.values().removeIf(entry -> {
+      if (!entry.details.isDone()) {
+        return true;
+      }
+      UserDetails details = entry.details.getNow(null);
+      return details instanceof UserDetailsImpl && id.equals(((UserDetailsImpl) details).getId());
+    });
+  }
+
+  public void evictAll() {
+    entries.clear();
+  }
+
+  public double getHitRatio() {
+    double total = hits.count() + misses.count();
+    return total == 0 ? 0 : hits.count() / total;
+  }
+
+  private void evictOverflow() {
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(entry -> entry.isExpired(now));
+
+    Iterator<Entry> values = entries.values().iterator();
+    while (entries.size() > maxSize && values.hasNext()) {
+      values.next();
+      values.remove();
+    }
+  }
+
+  private static UserDetails await(CompletableFuture<UserDetails> details) {
+    try {
+      return details.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static final class Entry {
+    private final CompletableFuture<UserDetails> details;
+
+    private final long expiresAt;
+
+    private Entry(CompletableFuture<UserDetails> details, long expiresAt) {
+      this.details = details;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isExpired(long now) {
+      return now >= expiresAt;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.openclassrooms.starterjwt.models.User;
+
+@Component
+public class UserDetailsCacheEvictionListener {
+  @Autowired
+  @Lazy
+  private CachedUserDetailsService cachedUserDetailsService;
+
+  @PostUpdate
+  @PostRemove
+  public void evict(User user) {
+    // The email may just have changed, so the old key can only be found through the id.
+    Long id = user.getId();
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      cachedUserDetailsService.evictById(id);
+      return;
+    }
+
+    // These callbacks run at flush time: evicting then would let a concurrent login cache the row as it was
+    // before the commit.
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        cachedUserDetailsService.evictById(id);
+      }
+    });
+  }
+}
@@ -0,0 +1,375 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.payload.response.SessionEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Optional single-writer path for bookings. Commands for a given session always land on the same partition thread,
+ * which decides a whole batch of them in memory and persists the net result with JDBC batches in one transaction.
+ * A booking rush on one session therefore costs a handful of statements per batch instead of contended row updates
+ * per request. Futures complete once the transaction has committed. When disabled, calls go straight to
+ * {@link SessionService}.
+ * <p>
+ * The engine is not the only writer: waitlist moves, admin edits and account deletion still book and cancel through
+ * {@link SessionService}. Every batched write therefore re-checks its precondition in SQL, and a batch that finds one
+ * broken rolls back and replays its commands one at a time through {@link SessionService}.
+ */
+@Component
+public class BookingEngine {
+    private static final Logger logger = LoggerFactory.getLogger(BookingEngine.class);
+
+    private final SessionService sessionService;
+
+    private final SessionEventBroadcaster sessionEventBroadcaster;
+
+    private final CatalogVersionService catalogVersionService;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final long retryAfterSeconds;
+
+    private final List<Partition> partitions = new ArrayList<>();
+
+    private final Timer batchTimer;
+
+    private volatile boolean running;
+
+    public BookingEngine(SessionService sessionService,
+                         SessionEventBroadcaster sessionEventBroadcaster,
+                         CatalogVersionService catalogVersionService,
+                         NamedParameterJdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${oc.app.bookingEngineEnabled:false}") boolean enabled,
+                         @Value("${oc.app.bookingEnginePartitions:0}") int partitionCount,
+                         @Value("${oc.app.bookingEngineQueueCapacity:10000}") int queueCapacity,
+                         @Value("${oc.app.bookingEngineBatchSize:256}") int batchSize,
+                         @Value("${oc.app.bookingEngineRetryAfterSeconds:1}") long retryAfterSeconds) {
+        this.sessionService = sessionService;
+        this.sessionEventBroadcaster = sessionEventBroadcaster;
+        this.catalogVersionService = catalogVersionService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.batchTimer = Timer.builder("booking.engine.batch").register(meterRegistry);
+
+        if (enabled) {
+            int count = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+            for (int i = 0; i < count; i++) {
+                partitions.add(new Partition(i, queueCapacity));
+            }
+            Gauge.builder("booking.engine.queue.depth", partitions,
+                    p -> p.stream().mapToInt(partition -> partition.queue.size()).sum()).register(meterRegistry);
+
+            running = true;
+            partitions.forEach(partition -> partition.thread.start());
+        }
+    }
+
+    public CompletableFuture<Void> participate(Long sessionId, Long userId) {
+        if (!enabled) {
+            sessionService.participate(sessionId, userId);
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(new Command(sessionId, userId, false));
+    }
+
+    public CompletableFuture<Void> noLongerParticipate(Long sessionId, Long userId) {
+        if (!enabled) {
+            sessionService.noLongerParticipate(sessionId, userId);
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(new Command(sessionId, userId, true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Partition partition : partitions) {
+            partition.thread.interrupt();
+        }
+        for (Partition partition : partitions) {
+            try {
+                partition.thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<Command> pending = new ArrayList<>();
+            partition.queue.drainTo(pending);
+            pending.forEach(command -> command.future.completeExceptionally(new ServiceUnavailableException(retryAfterSeconds)));
+        }
+    }
+
+    private CompletableFuture<Void> submit(Command command) {
+        Partition partition = partitions.get(Math.floorMod(command.sessionId.hashCode(), partitions.size()));
+        if (!running || !partition.queue.offer(command)) {
+            throw new ServiceUnavailableException(retryAfterSeconds);
+        }
+        return command.future;
+    }
+
+    private void run(Partition partition) {
+        List<Command> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(partition.queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            partition.queue.drainTo(batch, batchSize - 1);
+
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    private void process(List<Command> batch) {
+        try {
+            batchTimer.record(() -> transactionTemplate.executeWithoutResult(status -> apply(batch)));
+        } catch (RuntimeException e) {
+            logger.warn("Booking batch of {} commands rolled back, replaying them one at a time", batch.size(), e);
+            batch.forEach(this::processAlone);
+            return;
+        }
+
+        for (Command command : batch) {
+            if (command.failure != null) {
+                command.future.completeExceptionally(command.failure);
+            } else {
+                command.future.complete(null);
+            }
+        }
+    }
+
+    // Each command in its own transaction, so only the ones that are actually invalid fail.
+    private void processAlone(Command command) {
+        try {
+            if (command.cancel) {
+                sessionService.noLongerParticipate(command.sessionId, command.userId);
+            } else {
+                sessionService.participate(command.sessionId, command.userId);
+            }
+            command.future.complete(null);
+        } catch (RuntimeException e) {
+            command.future.completeExceptionally(e);
+        }
+    }
+
+    // The reads take no locks, so the writes below may find the rows changed by another writer meanwhile.
+    private void apply(List<Command> batch) {
+        MapSqlParameterSource ids = new MapSqlParameterSource()
+                .addValue("sessionIds", batch.stream().map(command -> command.sessionId).collect(Collectors.toSet()))
+                .addValue("userIds", batch.stream().map(command -> command.userId).collect(Collectors.toSet()));
+
+        Map<Long, Seats> seats = new HashMap<>();
+        jdbcTemplate.query("SELECT id, capacity, booked_seats FROM SESSIONS WHERE id IN (:sessionIds)", ids, row -> {
+            Object capacity = row.getObject("capacity");
+            seats.put(row.getLong("id"), new Seats(capacity != null ? ((Number) capacity).intValue() : null, row.getInt("booked_seats")));
+        });
+        jdbcTemplate.query("SELECT session_id, user_id FROM PARTICIPATE WHERE session_id IN (:sessionIds) AND user_id IN (:userIds)", ids, row -> {
+            Seats session = seats.get(row.getLong("session_id"));
+            if (session != null) {
+                session.initialParticipants.add(row.getLong("user_id"));
+            }
+        });
+        Set<Long> users = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM USERS WHERE id IN (:userIds)", ids, Long.class));
+        seats.values().forEach(session -> session.participants.addAll(session.initialParticipants));
+
+        for (Command command : batch) {
+            command.failure = decide(command, seats.get(command.sessionId), users);
+            if (command.failure == null) {
+                sessionEventBroadcaster.publish(command.cancel ? SessionEvent.PARTICIPANT_LEFT : SessionEvent.PARTICIPANT_JOINED,
+                        command.sessionId, command.userId);
+                catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, command.userId);
+            }
+        }
+        List<Object[]> promotions = new ArrayList<>();
+        seats.forEach((sessionId, session) -> promote(sessionId, session, promotions));
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> counters = new ArrayList<>();
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        seats.forEach((sessionId, session) -> {
+            session.participants.stream()
+                    .filter(userId -> !session.initialParticipants.contains(userId))
+                    .forEach(userId -> inserts.add(new Object[]{sessionId, userId}));
+            session.initialParticipants.stream()
+                    .filter(userId -> !session.participants.contains(userId))
+                    .forEach(userId -> deletes.add(new Object[]{sessionId, userId}));
+            if (session.booked != session.initialBooked) {
+                int delta = session.booked - session.initialBooked;
+                counters.add(new Object[]{delta, updatedAt, sessionId, delta, delta});
+            }
+        });
+
+        // A promotion or cancellation already applied elsewhere deletes nothing; a booking made elsewhere violates
+        // the PARTICIPATE primary key, a deleted user or session its foreign keys; the counter only moves within
+        // the session's current capacity.
+        if (!promotions.isEmpty()) {
+            batchUpdate("DELETE FROM WAITLIST WHERE id = ?", promotions);
+        }
+        if (!deletes.isEmpty()) {
+            batchUpdate("DELETE FROM PARTICIPATE WHERE session_id = ? AND user_id = ?", deletes);
+        }
+        if (!inserts.isEmpty()) {
+            batchUpdate("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", inserts);
+        }
+        if (!counters.isEmpty()) {
+            batchUpdate("UPDATE SESSIONS SET booked_seats = booked_seats + ?, updated_at = ? "
+                    + "WHERE id = ? AND booked_seats + ? >= 0 AND (capacity IS NULL OR booked_seats + ? <= capacity)", counters);
+        }
+    }
+
+    // Every row must match exactly once. Rewritten multi-row inserts report SUCCESS_NO_INFO; the keys cover them.
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        for (int count : jdbcTemplate.getJdbcTemplate().batchUpdate(sql, rows)) {
+            if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(sql, 1, count);
+            }
+        }
+    }
+
+    // Like SessionService.noLongerParticipate, every cancellation hands its seat to the next waiting user.
+    private void promote(Long sessionId, Seats session, List<Object[]> promotions) {
+        int seatsToFill = session.capacity != null
+                ? Math.min(session.cancelled, session.capacity - session.booked)
+                : session.cancelled;
+        if (seatsToFill <= 0) {
+            return;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("sessionId", sessionId)
+                .addValue("limit", seatsToFill);
+        jdbcTemplate.query("SELECT w.id, w.user_id FROM WAITLIST w WHERE w.session_id = :sessionId "
+                + "AND NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = w.session_id AND p.user_id = w.user_id) "
+                + "ORDER BY w.id LIMIT :limit", params, row -> {
+            promotions.add(new Object[]{row.getLong("id")});
+            long userId = row.getLong("user_id");
+            if (session.participants.add(userId)) {
+                session.booked++;
+                sessionEventBroadcaster.publish(SessionEvent.PARTICIPANT_JOINED, sessionId, userId);
+                catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, userId);
+            }
+        });
+    }
+
+    // Same outcomes, in the same order of checks, as SessionService.participate and noLongerParticipate.
+    private static RuntimeException decide(Command command, Seats session, Set<Long> users) {
+        if (session == null) {
+            return new NotFoundException();
+        }
+
+        if (command.cancel) {
+            if (!session.participants.remove(command.userId)) {
+                return new BadRequestException();
+            }
+            session.booked--;
+            session.cancelled++;
+            return null;
+        }
+
+        if (!users.contains(command.userId)) {
+            return new NotFoundException();
+        }
+        if (session.participants.contains(command.userId)) {
+            return new BadRequestException();
+        }
+        if (session.capacity != null && session.booked >= session.capacity) {
+            return new ConflictException();
+        }
+        session.participants.add(command.userId);
+        session.booked++;
+        return null;
+    }
+
+    private final class Partition {
+        private final BlockingQueue<Command> queue;
+
+        private final Thread thread;
+
+        private Partition(int index, int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(() -> run(this), "booking-writer-" + index);
+            this.thread.setDaemon(true);
+        }
+    }
+
+    private static final class Command {
+        private final Long sessionId;
+
+        private final Long userId;
+
+        private final boolean cancel;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private RuntimeException failure;
+
+        private Command(Long sessionId, Long userId, boolean cancel) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.cancel = cancel;
+        }
+    }
+
+    private static final class Seats {
+        private final Integer capacity;
+
+        private final int initialBooked;
+
+        private int booked;
+
+        private int cancelled;
+
+        private final Set<Long> initialParticipants = new HashSet<>();
+
+        private final Set<Long> participants = new HashSet<>();
+
+        private Seats(Integer capacity, int booked) {
+            this.capacity = capacity;
+            this.initialBooked = booked;
+            this.booked = booked;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * In-memory version of each cached catalog, bumped after every committed write to it. Conditional GETs compare
+ * against the version instead of reading or serializing anything, so a write that bypasses the services (a manual
+ * SQL update, another instance) is not seen until the next bump or restart. The epoch in the ETag keeps the tags
+ * of a previous run from matching after a restart.
+ */
+@Service
+public class CatalogVersionService {
+    public enum Catalog {
+        SESSIONS("s"),
+        TEACHERS("t");
+
+        private final String prefix;
+
+        Catalog(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    // Caches may store the body but have to revalidate it on every request, which also re-checks the credentials.
+    public static final CacheControl CACHE_CONTROL = CacheControl.noCache().mustRevalidate();
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<Catalog, AtomicReference<Version>> versions = new EnumMap<>(Catalog.class);
+
+    private final Map<Catalog, List<Consumer<Set<Long>>>> listeners = new EnumMap<>(Catalog.class);
+
+    public CatalogVersionService() {
+        long startedAt = System.currentTimeMillis() / 1000 * 1000;
+        for (Catalog catalog : Catalog.values()) {
+            versions.put(catalog, new AtomicReference<>(new Version(catalog, 0, startedAt)));
+            listeners.put(catalog, new CopyOnWriteArrayList<>());
+        }
+    }
+
+    // Listeners run on the writing thread once the new version is visible; they must only hand work off. They get
+    // the users who changed their own data with the write, e.g. by booking, when the writer named them.
+    public void onChange(Catalog catalog, Consumer<Set<Long>> listener) {
+        listeners.get(catalog).add(listener);
+    }
+
+    public Version current(Catalog catalog) {
+        return versions.get(catalog).get();
+    }
+
+    public void changed(Catalog catalog) {
+        changed(catalog, null);
+    }
+
+    // Inside a transaction the bump waits for the commit and happens once, however many rows the transaction wrote.
+    public void changed(Catalog catalog, Long actorId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(catalog, actorId != null ? Collections.singleton(actorId) : Collections.emptySet());
+            return;
+        }
+        PendingBump pending = null;
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingBump && ((PendingBump) synchronization).isFor(this, catalog)) {
+                pending = (PendingBump) synchronization;
+                break;
+            }
+        }
+        if (pending == null) {
+            pending = new PendingBump(catalog);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        if (actorId != null) {
+            pending.actors.add(actorId);
+        }
+    }
+
+    // Qualifiers distinguish representations of the same version, e.g. per-viewer flags in a listing.
+    public String etag(Catalog catalog, Object... qualifiers) {
+        return etag(current(catalog), qualifiers);
+    }
+
+    public String etag(Version version, Object... qualifiers) {
+        StringBuilder etag = new StringBuilder("\"")
+                .append(version.catalog.prefix).append(epoch).append('.').append(version.value);
+        for (Object qualifier : qualifiers) {
+            etag.append('.').append(qualifier);
+        }
+        return etag.append('"').toString();
+    }
+
+    public long lastModified(Catalog catalog) {
+        return versions.get(catalog).get().lastModified;
+    }
+
+    // Last-Modified follows the clock at its one second resolution and never moves back; it is not pushed forward
+    // per bump, which would run ahead of the clock under sustained writes. Two bumps within a second share it: the
+    // ETag, which carries the version and takes precedence over If-Modified-Since, tells them apart.
+    private void bump(Catalog catalog, Set<Long> actors) {
+        versions.get(catalog).updateAndGet(current -> new Version(catalog, current.value + 1,
+                Math.max(System.currentTimeMillis() / 1000 * 1000, current.lastModified)));
+        listeners.get(catalog).forEach(listener -> listener.accept(actors));
+    }
+
+    private final class PendingBump implements TransactionSynchronization {
+        private final Catalog catalog;
+
+        private final Set<Long> actors = new HashSet<>();
+
+        private PendingBump(Catalog catalog) {
+            this.catalog = catalog;
+        }
+
+        private boolean isFor(CatalogVersionService service, Catalog catalog) {
+            return CatalogVersionService.this == service && this.catalog == catalog;
+        }
+
+        @Override
+        public void afterCommit() {
+            bump(catalog, actors);
+        }
+    }
+
+    public static final class Version {
+        private final Catalog catalog;
+        private final long value;
+        private final long lastModified;
+
+        private Version(Catalog catalog, long value, long lastModified) {
+            this.catalog = catalog;
+            this.value = value;
+            this.lastModified = lastModified;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
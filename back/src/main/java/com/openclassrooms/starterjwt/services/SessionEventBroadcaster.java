@@ -0,0 +1,207 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.payload.response.SessionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans session changes out to the SSE subscribers of GET /api/session/stream. Publishing only appends to each
+ * subscriber's bounded buffer; a small pool of sender threads drains the buffers, so a slow client never holds up
+ * the writer or the other clients. A subscriber whose buffer overflows loses its pending events and gets a single
+ * {@code resync} event instead, telling it to reload the listing. Heartbeat comments keep idle connections open
+ * and detect the closed ones.
+ */
+@Component
+public class SessionEventBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(SessionEventBroadcaster.class);
+
+    static final String RESYNC_EVENT = "resync";
+
+    private static final Message HEARTBEAT = new Message(null, null);
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService sender;
+
+    private final ScheduledExecutorService heartbeat;
+
+    private final int bufferSize;
+
+    private final long timeoutMs;
+
+    private final Counter resyncs;
+
+    public SessionEventBroadcaster(ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${oc.app.sessionStreamBufferSize:256}") int bufferSize,
+                                   @Value("${oc.app.sessionStreamSenderThreads:4}") int senderThreads,
+                                   @Value("${oc.app.sessionStreamHeartbeatMs:15000}") long heartbeatMs,
+                                   @Value("${oc.app.sessionStreamTimeoutMs:1800000}") long timeoutMs) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.sender = Executors.newFixedThreadPool(senderThreads, daemonThreads("session-stream-sender-"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemonThreads("session-stream-heartbeat-"));
+        this.heartbeat.scheduleAtFixedRate(() -> dispatch(HEARTBEAT), heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        this.resyncs = Counter.builder("session.stream.resyncs").register(meterRegistry);
+        Gauge.builder("session.stream.subscribers", subscribers, Set::size).register(meterRegistry);
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(this.timeoutMs));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    // Inside a transaction the event waits for the commit, so subscribers never see a change that was rolled back.
+    public void publish(String type, Long sessionId, Long userId) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(new SessionEvent(type, sessionId, userId));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        Message message = new Message(type, data);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(message);
+                }
+            });
+        } else {
+            dispatch(message);
+        }
+    }
+
+    public void publish(String type, Long sessionId) {
+        publish(type, sessionId, null);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private void dispatch(Message message) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(message);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<Message> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile boolean resync;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Message message) {
+            if (!buffer.offer(message)) {
+                buffer.clear();
+                resync = true;
+                resyncs.increment();
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        // Only one drain runs per subscriber at a time; the loop re-checks for events offered while it was finishing.
+        private void drain() {
+            try {
+                do {
+                    if (resync) {
+                        resync = false;
+                        emitter.send(SseEmitter.event().name(RESYNC_EVENT).data("{}", MediaType.APPLICATION_JSON));
+                    }
+                    Message message;
+                    while ((message = buffer.poll()) != null) {
+                        emitter.send(message.toEvent());
+                    }
+                    scheduled.set(false);
+                } while ((resync || !buffer.isEmpty()) && scheduled.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Dropping session stream subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                buffer.clear();
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private static final class Message {
+        private final String name;
+
+        private final String data;
+
+        private Message(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        private SseEmitter.SseEventBuilder toEvent() {
+            if (name == null) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            return SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+}
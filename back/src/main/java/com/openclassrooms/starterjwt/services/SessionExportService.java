@@ -0,0 +1,199 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.stream.Collectors;
+
+/**
+ * Streams sessions with their participant ids from a forward-only result set straight to the response, one
+ * session at a time, so memory use does not depend on the number of sessions exported. The default fetch size
+ * ({@code Integer.MIN_VALUE}) makes the MySQL driver stream rows instead of buffering the whole result.
+ */
+@Service
+public class SessionExportService {
+    public enum Format {
+        NDJSON("ndjson", MediaType.parseMediaType("application/x-ndjson")),
+        CSV("csv", MediaType.parseMediaType("text/csv"));
+
+        private final String extension;
+        private final MediaType mediaType;
+
+        Format(String extension, MediaType mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static Format of(String value) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String CSV_HEADER = "id,name,date,teacher_id,description,capacity,users,createdAt,updatedAt";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public SessionExportService(DataSource dataSource,
+                                ObjectMapper objectMapper,
+                                @Value("${oc.app.sessionExportFetchSize:-2147483648}") int fetchSize) {
+        JdbcTemplate streamingTemplate = new JdbcTemplate(dataSource);
+        streamingTemplate.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(streamingTemplate);
+        this.objectMapper = objectMapper;
+    }
+
+    public void export(Date from, Date to, Format format, OutputStream out) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT s.id, s.name, s.date, s.teacher_id, s.description, s.capacity, "
+                + "s.created_at, s.updated_at, p.user_id FROM SESSIONS s LEFT JOIN PARTICIPATE p ON p.session_id = s.id WHERE 1 = 1");
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        if (from != null) {
+            sql.append(" AND s.date >= :from");
+            params.addValue("from", from);
+        }
+        if (to != null) {
+            sql.append(" AND s.date < :to");
+            params.addValue("to", to);
+        }
+        // Keeps the rows of one session together, in the listing order.
+        sql.append(" ORDER BY s.date, s.id");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        SessionWriter sessionWriter = format == Format.CSV ? new CsvWriter(writer) : new NdjsonWriter(writer);
+        SessionDto[] current = new SessionDto[1];
+        try {
+            this.jdbcTemplate.query(sql.toString(), params, row -> {
+                long id = row.getLong("id");
+                if (current[0] == null || current[0].getId() != id) {
+                    if (current[0] != null) {
+                        sessionWriter.write(current[0]);
+                    }
+                    current[0] = toDto(row);
+                }
+                long userId = row.getLong("user_id");
+                if (!row.wasNull()) {
+                    current[0].getUsers().add(userId);
+                }
+            });
+            if (current[0] != null) {
+                sessionWriter.write(current[0]);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private static SessionDto toDto(ResultSet row) throws SQLException {
+        long teacherId = row.getLong("teacher_id");
+        Long teacher = row.wasNull() ? null : teacherId;
+        int capacityValue = row.getInt("capacity");
+        Integer capacity = row.wasNull() ? null : capacityValue;
+        Timestamp createdAt = row.getTimestamp("created_at");
+        Timestamp updatedAt = row.getTimestamp("updated_at");
+
+        return new SessionDto(
+                row.getLong("id"),
+                row.getString("name"),
+                row.getTimestamp("date"),
+                teacher,
+                row.getString("description"),
+                capacity,
+                new ArrayList<>(),
+                createdAt != null ? createdAt.toLocalDateTime() : null,
+                updatedAt != null ? updatedAt.toLocalDateTime() : null);
+    }
+
+    private interface SessionWriter {
+        void write(SessionDto session);
+    }
+
+    private final class NdjsonWriter implements SessionWriter {
+        private final Writer writer;
+
+        private NdjsonWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(SessionDto session) {
+            try {
+                writer.write(objectMapper.writeValueAsString(session));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private final class CsvWriter implements SessionWriter {
+        private final Writer writer;
+
+        private CsvWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(SessionDto session) {
+            try {
+                writer.write(String.join(",",
+                        String.valueOf(session.getId()),
+                        csv(session.getName()),
+                        session.getDate() != null ? session.getDate().toInstant().toString() : "",
+                        session.getTeacher_id() != null ? String.valueOf(session.getTeacher_id()) : "",
+                        csv(session.getDescription()),
+                        session.getCapacity() != null ? String.valueOf(session.getCapacity()) : "",
+                        session.getUsers().stream().map(String::valueOf).collect(Collectors.joining(";")),
+                        session.getCreatedAt() != null ? session.getCreatedAt().toString() : "",
+                        session.getUpdatedAt() != null ? session.getUpdatedAt().toString() : ""));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,164 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkSessionResult;
+import com.openclassrooms.starterjwt.payload.response.SessionEvent;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bulk creation of sessions. Every item is validated first, with one query for all the referenced teachers and one
+ * for all the referenced users; the valid items are then inserted in JDBC batches of {@code sessionBulkBatchSize}.
+ */
+@Service
+public class SessionImportService {
+    private final TeacherRepository teacherRepository;
+    private final UserRepository userRepository;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final SessionEventBroadcaster sessionEventBroadcaster;
+    private final CatalogVersionService catalogVersionService;
+    private final int batchSize;
+
+    public SessionImportService(TeacherRepository teacherRepository,
+                                UserRepository userRepository,
+                                Validator validator,
+                                EntityManager entityManager,
+                                SessionEventBroadcaster sessionEventBroadcaster,
+                                CatalogVersionService catalogVersionService,
+                                @Value("${oc.app.sessionBulkBatchSize:500}") int batchSize) {
+        this.teacherRepository = teacherRepository;
+        this.userRepository = userRepository;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.sessionEventBroadcaster = sessionEventBroadcaster;
+        this.catalogVersionService = catalogVersionService;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public List<BulkSessionResult> createAll(List<SessionDto> sessionDtos) {
+        Set<Long> teacherIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (SessionDto sessionDto : sessionDtos) {
+            if (sessionDto != null) {
+                teacherIds.add(sessionDto.getTeacher_id());
+                if (sessionDto.getUsers() != null) {
+                    userIds.addAll(sessionDto.getUsers());
+                }
+            }
+        }
+        Set<Long> knownTeachers = existing(teacherIds, this.teacherRepository::findExistingIds);
+        Set<Long> knownUsers = existing(userIds, this.userRepository::findExistingIds);
+
+        List<BulkSessionResult> results = new ArrayList<>(sessionDtos.size());
+        List<Session> sessions = new ArrayList<>(sessionDtos.size());
+        for (int i = 0; i < sessionDtos.size(); i++) {
+            SessionDto sessionDto = sessionDtos.get(i);
+            List<String> errors = validate(sessionDto, knownTeachers, knownUsers);
+            results.add(new BulkSessionResult(i, null, errors));
+            sessions.add(errors.isEmpty() ? toEntity(sessionDto) : null);
+        }
+
+        org.hibernate.Session hibernateSession = this.entityManager.unwrap(org.hibernate.Session.class);
+        hibernateSession.setJdbcBatchSize(this.batchSize);
+        int pending = 0;
+        boolean created = false;
+        for (int i = 0; i < sessions.size(); i++) {
+            Session session = sessions.get(i);
+            if (session == null) {
+                continue;
+            }
+            this.entityManager.persist(session);
+            results.get(i).setId(session.getId());
+            this.sessionEventBroadcaster.publish(SessionEvent.CREATED, session.getId());
+            created = true;
+            if (++pending == this.batchSize) {
+                flush();
+                pending = 0;
+            }
+        }
+        flush();
+        if (created) {
+            this.catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        }
+
+        return results;
+    }
+
+    private List<String> validate(SessionDto sessionDto, Set<Long> knownTeachers, Set<Long> knownUsers) {
+        if (sessionDto == null) {
+            return Collections.singletonList("session: must not be null");
+        }
+
+        List<String> errors = new ArrayList<>();
+        for (ConstraintViolation<SessionDto> violation : this.validator.validate(sessionDto)) {
+            errors.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        if (sessionDto.getTeacher_id() != null && !knownTeachers.contains(sessionDto.getTeacher_id())) {
+            errors.add("teacher_id: unknown teacher " + sessionDto.getTeacher_id());
+        }
+        if (sessionDto.getUsers() != null) {
+            Set<Long> users = new LinkedHashSet<>(sessionDto.getUsers());
+            for (Long userId : users) {
+                if (!knownUsers.contains(userId)) {
+                    errors.add("users: unknown user " + userId);
+                }
+            }
+            if (SessionService.exceedsCapacity(sessionDto.getCapacity(), users.size())) {
+                errors.add("users: " + users.size() + " participants exceed the capacity of " + sessionDto.getCapacity());
+            }
+        }
+        return errors;
+    }
+
+    // References only: the ids were checked above, so no row is loaded per session.
+    private Session toEntity(SessionDto sessionDto) {
+        List<User> users = new ArrayList<>();
+        if (sessionDto.getUsers() != null) {
+            for (Long userId : new LinkedHashSet<>(sessionDto.getUsers())) {
+                users.add(this.entityManager.getReference(User.class, userId));
+            }
+        }
+
+        return new Session()
+                .setName(sessionDto.getName())
+                .setDescription(sessionDto.getDescription())
+                .setDate(sessionDto.getDate())
+                .setCapacity(sessionDto.getCapacity())
+                .setTeacher(this.entityManager.getReference(Teacher.class, sessionDto.getTeacher_id()))
+                .setUsers(users)
+                .setBookedSeats(users.size());
+    }
+
+    private void flush() {
+        this.entityManager.flush();
+        this.entityManager.clear();
+    }
+
+    private static Set<Long> existing(Set<Long> ids, Function<Collection<Long>, List<Long>> query) {
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(query.apply(ids));
+    }
+}
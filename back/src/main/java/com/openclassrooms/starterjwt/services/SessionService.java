@@ -1,78 +1,259 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.payload.request.SessionCursor;
+import com.openclassrooms.starterjwt.payload.response.SessionEvent;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
-import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class SessionService {
     private final SessionRepository sessionRepository;
+    private final WaitlistRepository waitlistRepository;
+    private final SessionEventBroadcaster sessionEventBroadcaster;
+    private final SessionSyncService sessionSyncService;
+    private final CatalogVersionService catalogVersionService;
 
-    private final UserRepository userRepository;
-
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    public SessionService(SessionRepository sessionRepository,
+                          WaitlistRepository waitlistRepository,
+                          SessionEventBroadcaster sessionEventBroadcaster,
+                          SessionSyncService sessionSyncService,
+                          CatalogVersionService catalogVersionService) {
         this.sessionRepository = sessionRepository;
-        this.userRepository = userRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.sessionEventBroadcaster = sessionEventBroadcaster;
+        this.sessionSyncService = sessionSyncService;
+        this.catalogVersionService = catalogVersionService;
     }
 
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        session.setBookedSeats(checkCapacity(session));
+        Session created = this.sessionRepository.save(session);
+        this.sessionEventBroadcaster.publish(SessionEvent.CREATED, created.getId());
+        this.catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        return created;
     }
 
+    // The tombstone is written in the same transaction, so a sync client never misses a committed delete.
+    @Transactional
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        this.sessionSyncService.recordDeletion(id);
+        this.sessionEventBroadcaster.publish(SessionEvent.DELETED, id);
+        this.catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    // viewerId, when known, sets bookedByMe with one query on the viewer's PARTICIPATE rows for the page.
+    public List<SessionSummaryDto> findPage(Date from, Date to, Long teacherId, Long participantId, Long viewerId,
+                                            SessionCursor after, int limit) {
+        List<SessionSummaryDto> sessions = this.sessionRepository.findPage(from, to, teacherId, participantId,
+                after != null ? after.getDate() : null,
+                after != null ? after.getId() : null,
+                limit);
+        if (viewerId == null || sessions.isEmpty()) {
+            return sessions;
+        }
+
+        Map<Long, SessionSummaryDto> byId = new HashMap<>();
+        sessions.forEach(session -> byId.put(session.getId(), session));
+        for (Long sessionId : findBookedSessionIds(viewerId, byId.keySet())) {
+            byId.get(sessionId).setBookedByMe(true);
+        }
+
+        return sessions;
+    }
+
+    public Set<Long> findBookedSessionIds(Long userId) {
+        Set<Long> booked = new HashSet<>();
+        this.sessionRepository.findBookedSessionIds(userId).forEach(id -> booked.add(id.longValue()));
+        return booked;
+    }
+
+    public Set<Long> findBookedSessionIds(Long userId, Collection<Long> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Long> booked = new HashSet<>();
+        this.sessionRepository.findBookedSessionIds(userId, sessionIds).forEach(id -> booked.add(id.longValue()));
+        return booked;
+    }
+
+    public SessionDto getDtoById(Long id) {
+        SessionDto session = this.sessionRepository.findDtoById(id);
+        if (session == null) {
+            return null;
+        }
+
+        return withParticipants(Collections.singletonList(session)).get(0);
+    }
+
+    // A single query on PARTICIPATE instead of loading every participant entity.
+    private List<SessionDto> withParticipants(List<SessionDto> sessions) {
+        if (sessions.isEmpty()) {
+            return sessions;
+        }
+
+        Map<Long, List<Long>> participants = new HashMap<>();
+        for (SessionDto session : sessions) {
+            session.setUsers(new ArrayList<>());
+            participants.put(session.getId(), session.getUsers());
+        }
+        for (SessionRepository.ParticipantId participant : this.sessionRepository.findParticipantIds(participants.keySet())) {
+            participants.get(participant.getSessionId()).add(participant.getUserId());
+        }
+
+        return sessions;
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    // The counter is recounted from PARTICIPATE once the list is written, not taken from the submitted list,
+    // so a booking that lands while the admin edits the session is not lost from it.
+    @Transactional
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        session.setBookedSeats(checkCapacity(session));
+        Session updated = this.sessionRepository.saveAndFlush(session);
+        this.sessionRepository.recountSeats(id);
+        this.sessionEventBroadcaster.publish(SessionEvent.UPDATED, id);
+        this.catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        return updated;
+    }
+
+    private static int checkCapacity(Session session) {
+        int users = session.getUsers() != null ? session.getUsers().size() : 0;
+        if (exceedsCapacity(session.getCapacity(), users)) {
+            throw new BadRequestException();
+        }
+        return users;
+    }
+
+    // Also applied by the bulk import, which reports it on the offending row instead of failing the request.
+    static boolean exceedsCapacity(Integer capacity, int users) {
+        return capacity != null && users > capacity;
     }
 
+    @Transactional
     public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
+            if (this.sessionRepository.countParticipant(id, userId) > 0) {
+                throw new BadRequestException();
+            }
+            throw new ConflictException();
+        }
+
+        // Any failure below rolls the reserved seat back with the transaction.
+        int inserted;
+        try {
+            inserted = this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            throw new BadRequestException();
+        }
+
+        if (inserted == 0) {
             throw new NotFoundException();
         }
+        this.sessionEventBroadcaster.publish(SessionEvent.PARTICIPANT_JOINED, id, userId);
+        this.catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, userId);
+    }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+    @Transactional
+    public void noLongerParticipate(Long id, Long userId) {
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
             throw new BadRequestException();
         }
 
-        session.getUsers().add(user);
+        this.sessionRepository.releaseSeat(id);
+        this.sessionEventBroadcaster.publish(SessionEvent.PARTICIPANT_LEFT, id, userId);
+        promoteFromWaitlist(id);
+        this.catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, userId);
+    }
+
+    // The freed seat goes to the oldest waiting user, in the cancelling transaction.
+    private void promoteFromWaitlist(Long id) {
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            return;
+        }
+
+        Optional<WaitlistEntry> next;
+        while ((next = this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(id)).isPresent()) {
+            WaitlistEntry entry = next.get();
+            // Skips entries taken by a concurrent promotion and users who got a seat another way.
+            if (this.waitlistRepository.remove(entry.getId()) == 1
+                    && this.sessionRepository.addParticipantIfAbsent(id, entry.getUserId()) == 1) {
+                this.sessionEventBroadcaster.publish(SessionEvent.PARTICIPANT_JOINED, id, entry.getUserId());
+                this.catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, entry.getUserId());
+                return;
+            }
+        }
 
-        this.sessionRepository.save(session);
+        this.sessionRepository.releaseSeat(id);
     }
 
-    public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
-            throw new NotFoundException();
+    @Transactional
+    public long joinWaitlist(Long id, Long userId) {
+        boolean full = this.sessionRepository.isFull(id).orElseThrow(NotFoundException::new);
+        if (!full || this.sessionRepository.countParticipant(id, userId) > 0) {
+            throw new BadRequestException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        int joined;
+        try {
+            joined = this.waitlistRepository.join(id, userId);
+        } catch (DataIntegrityViolationException e) {
             throw new BadRequestException();
         }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        if (joined == 0) {
+            throw new NotFoundException();
+        }
+        return this.waitlistRepository.findPosition(id, userId);
+    }
+
+    public void leaveWaitlist(Long id, Long userId) {
+        if (this.waitlistRepository.leave(id, userId) == 0) {
+            throw new NotFoundException();
+        }
+    }
 
-        this.sessionRepository.save(session);
+    public long getWaitlistPosition(Long id, Long userId) {
+        long position = this.waitlistRepository.findPosition(id, userId);
+        if (position == 0) {
+            throw new NotFoundException();
+        }
+        return position;
     }
 }
@@ -0,0 +1,227 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.payload.request.SessionCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the first page of GET /api/session, the one every client opens, serialized in memory together with its
+ * gzip encoding, so the request is answered by copying bytes. Each session is also kept as two JSON fragments,
+ * with bookedByMe false and true, to assemble the page of a viewer with bookings without Jackson.
+ * <p>
+ * Session writes only mark the snapshot dirty: one rebuild runs {@code sessionSnapshotDebounceMs} after the first
+ * of them, covering all the writes of that window. A snapshot older than {@code sessionSnapshotMaxStalenessMs} that
+ * misses a write is not served; the controller falls back to the live query until the rebuild lands. Neither is an
+ * outdated snapshot served to a user who booked or cancelled since it was built: bookedByMe is read live, and next
+ * to the snapshot's participantCount it would show the user's own booking without counting it.
+ */
+@Service
+public class SessionSnapshotService {
+    private static final Logger logger = LoggerFactory.getLogger(SessionSnapshotService.class);
+
+    private final SessionService sessionService;
+
+    private final ObjectMapper objectMapper;
+
+    private final CatalogVersionService catalogVersionService;
+
+    private final int pageSize;
+
+    private final long debounceMs;
+
+    private final long maxStalenessMs;
+
+    private final ScheduledExecutorService rebuilder;
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    // When each user last booked or cancelled; entries older than the current snapshot are dropped on rebuild.
+    private final Map<Long, Long> lastWrites = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot;
+
+    public SessionSnapshotService(SessionService sessionService,
+                                  ObjectMapper objectMapper,
+                                  CatalogVersionService catalogVersionService,
+                                  @Value("${oc.app.sessionSnapshotEnabled:true}") boolean enabled,
+                                  @Value("${oc.app.sessionPageDefaultSize:50}") int pageSize,
+                                  @Value("${oc.app.sessionSnapshotDebounceMs:250}") long debounceMs,
+                                  @Value("${oc.app.sessionSnapshotMaxStalenessMs:2000}") long maxStalenessMs) {
+        this.sessionService = sessionService;
+        this.objectMapper = objectMapper;
+        this.catalogVersionService = catalogVersionService;
+        this.pageSize = pageSize;
+        this.debounceMs = debounceMs;
+        this.maxStalenessMs = maxStalenessMs;
+
+        if (enabled) {
+            this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "session-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            catalogVersionService.onChange(CatalogVersionService.Catalog.SESSIONS, this::changed);
+            scheduleRebuild();
+        } else {
+            this.rebuilder = null;
+        }
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    // Null while disabled, before the first build, or when the snapshot is outdated and either past the staleness
+    // bound or older than the viewer's last booking.
+    public Snapshot current(Long viewerId) {
+        Snapshot current = this.snapshot;
+        if (current == null) {
+            return null;
+        }
+        if (current.version.getValue() == catalogVersionService.current(CatalogVersionService.Catalog.SESSIONS).getValue()) {
+            return current;
+        }
+        if (System.currentTimeMillis() - current.builtAt > maxStalenessMs) {
+            return null;
+        }
+        Long lastWrite = viewerId != null ? lastWrites.get(viewerId) : null;
+        return lastWrite == null || lastWrite < current.builtAt ? current : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    // Runs after the commit, so a write recorded at or after builtAt may have missed the snapshot's query.
+    private void changed(Set<Long> actors) {
+        long now = System.currentTimeMillis();
+        actors.forEach(actorId -> lastWrites.merge(actorId, now, Math::max));
+        scheduleRebuild();
+    }
+
+    void scheduleRebuild() {
+        if (!rebuilder.isShutdown() && rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(this::rebuild, debounceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // The version and the build time are taken before the query, so the snapshot is never labelled newer than it is.
+    // A write landing during the build schedules the next one.
+    void rebuild() {
+        rebuildScheduled.set(false);
+        try {
+            CatalogVersionService.Version version = catalogVersionService.current(CatalogVersionService.Catalog.SESSIONS);
+            long builtAt = System.currentTimeMillis();
+
+            List<SessionSummaryDto> sessions = sessionService.findPage(null, null, null, null, null, null, pageSize + 1);
+            String nextCursor = null;
+            if (sessions.size() > pageSize) {
+                sessions = sessions.subList(0, pageSize);
+                nextCursor = SessionCursor.after(sessions.get(pageSize - 1)).encode();
+            }
+
+            List<Long> sessionIds = new ArrayList<>(sessions.size());
+            List<byte[]> notBooked = new ArrayList<>(sessions.size());
+            List<byte[]> booked = new ArrayList<>(sessions.size());
+            for (SessionSummaryDto session : sessions) {
+                sessionIds.add(session.getId());
+                session.setBookedByMe(false);
+                notBooked.add(objectMapper.writeValueAsBytes(session));
+                session.setBookedByMe(true);
+                booked.add(objectMapper.writeValueAsBytes(session));
+            }
+
+            this.snapshot = new Snapshot(version, builtAt, nextCursor, sessionIds, notBooked, booked);
+            lastWrites.values().removeIf(lastWrite -> lastWrite < builtAt);
+        } catch (Exception e) {
+            logger.warn("Session snapshot rebuild failed, serving live listings until the next write", e);
+        }
+    }
+
+    public static final class Snapshot {
+        private final CatalogVersionService.Version version;
+        private final long builtAt;
+        private final String nextCursor;
+        private final List<Long> sessionIds;
+        private final List<byte[]> notBooked;
+        private final List<byte[]> booked;
+        private final byte[] body;
+        private final byte[] gzipBody;
+
+        private Snapshot(CatalogVersionService.Version version, long builtAt, String nextCursor, List<Long> sessionIds,
+                         List<byte[]> notBooked, List<byte[]> booked) throws IOException {
+            this.version = version;
+            this.builtAt = builtAt;
+            this.nextCursor = nextCursor;
+            this.sessionIds = Collections.unmodifiableList(sessionIds);
+            this.notBooked = notBooked;
+            this.booked = booked;
+            this.body = assemble(Collections.emptySet());
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            this.gzipBody = compressed.toByteArray();
+        }
+
+        public CatalogVersionService.Version getVersion() {
+            return version;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+
+        public byte[] body(Set<Long> bookedSessionIds) {
+            return bookedSessionIds.isEmpty() ? body : assemble(bookedSessionIds);
+        }
+
+        private byte[] assemble(Set<Long> bookedSessionIds) {
+            int length = 2 + Math.max(sessionIds.size() - 1, 0);
+            for (int i = 0; i < sessionIds.size(); i++) {
+                length += (bookedSessionIds.contains(sessionIds.get(i)) ? booked : notBooked).get(i).length;
+            }
+
+            byte[] assembled = new byte[length];
+            int position = 0;
+            assembled[position++] = '[';
+            for (int i = 0; i < sessionIds.size(); i++) {
+                if (i > 0) {
+                    assembled[position++] = ',';
+                }
+                byte[] fragment = (bookedSessionIds.contains(sessionIds.get(i)) ? booked : notBooked).get(i);
+                System.arraycopy(fragment, 0, assembled, position, fragment.length);
+                position += fragment.length;
+            }
+            assembled[position] = ']';
+            return assembled;
+        }
+    }
+}
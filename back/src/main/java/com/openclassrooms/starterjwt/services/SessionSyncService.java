@@ -0,0 +1,88 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.payload.request.SessionWatermark;
+import com.openclassrooms.starterjwt.payload.response.SessionChangesResponse;
+import com.openclassrooms.starterjwt.repository.SessionDeletionRepository;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Incremental sync of the session catalog. The watermark is an (updatedAt, id) position; each call returns the
+ * sessions written after it and the ids deleted since the watermark was issued, read from the SESSION_DELETIONS log.
+ * The returned watermark never passes now minus {@code sessionChangesSettleMs}, so a write stamped just before a slow
+ * commit is picked up by the next call instead of being skipped; clients apply changes as upserts and may see a
+ * session twice.
+ */
+@Service
+public class SessionSyncService {
+    private final SessionRepository sessionRepository;
+    private final SessionDeletionRepository sessionDeletionRepository;
+    private final long settleMs;
+    private final long retentionMs;
+
+    public SessionSyncService(SessionRepository sessionRepository,
+                              SessionDeletionRepository sessionDeletionRepository,
+                              @Value("${oc.app.sessionChangesSettleMs:5000}") long settleMs,
+                              @Value("${oc.app.sessionDeletionRetentionMs:2592000000}") long retentionMs) {
+        this.sessionRepository = sessionRepository;
+        this.sessionDeletionRepository = sessionDeletionRepository;
+        this.settleMs = settleMs;
+        this.retentionMs = retentionMs;
+    }
+
+    // Without a watermark, or with one issued before the oldest entry of the deletion log, the client has to start
+    // over from a full copy. Expiry goes by the issue time, not the position: paging through sessions last written
+    // months ago is not a reason to start over again.
+    @Transactional(readOnly = true)
+    public SessionChangesResponse findChanges(SessionWatermark since, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime settled = now.minusNanos(this.settleMs * 1_000_000);
+        boolean reset = since == null || toLocalDateTime(since.getIssuedAt()).isBefore(now.minusNanos(this.retentionMs * 1_000_000));
+        LocalDateTime afterUpdatedAt = reset ? null : toLocalDateTime(since.getUpdatedAt());
+        Long afterId = reset ? null : since.getId();
+
+        List<SessionSummaryDto> sessions = this.sessionRepository.findChangedSince(afterUpdatedAt, afterId, limit + 1);
+        boolean hasMore = sessions.size() > limit;
+        if (hasMore) {
+            sessions = sessions.subList(0, limit);
+        }
+        List<Long> deleted = reset
+                ? Collections.emptyList()
+                : this.sessionDeletionRepository.findSessionIdsDeletedSince(toLocalDateTime(since.getIssuedAt()));
+
+        Date issuedAt = toDate(settled);
+        SessionWatermark watermark = new SessionWatermark(issuedAt, 0L, issuedAt);
+        if (hasMore) {
+            SessionSummaryDto last = sessions.get(limit - 1);
+            if (last.getUpdatedAt().isBefore(settled)) {
+                watermark = new SessionWatermark(toDate(last.getUpdatedAt()), last.getId(), issuedAt);
+            }
+        }
+
+        return new SessionChangesResponse(sessions, deleted, watermark.encode(), hasMore, reset);
+    }
+
+    @Transactional
+    public void recordDeletion(Long sessionId) {
+        LocalDateTime now = LocalDateTime.now();
+        this.sessionDeletionRepository.insert(sessionId, now);
+        this.sessionDeletionRepository.deleteOlderThan(now.minusNanos(this.retentionMs * 1_000_000));
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -1,24 +1,141 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Teachers are read for every session listing and mapping but almost never written, so the whole table is kept
+ * in memory as an immutable snapshot, loaded at startup. Readers only dereference the current snapshot and never
+ * lock; writes go to the database first, then publish a modified copy. A lookup that misses the snapshot falls
+ * back to the database, so rows inserted outside the application still resolve. The cached entities are shared
+ * between callers and must not be modified.
+ */
 @Service
 public class TeacherService {
     private final TeacherRepository teacherRepository;
+    private final CatalogVersionService catalogVersionService;
+    private final boolean cacheEnabled;
 
-    public TeacherService(TeacherRepository teacherRepository) {
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList());
+
+    public TeacherService(TeacherRepository teacherRepository,
+                          CatalogVersionService catalogVersionService,
+                          @Value("${oc.app.teacherCacheEnabled:true}") boolean cacheEnabled) {
         this.teacherRepository = teacherRepository;
+        this.catalogVersionService = catalogVersionService;
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (this.cacheEnabled) {
+            this.snapshot = new Snapshot(this.teacherRepository.findAll());
+        }
     }
 
     public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+        if (!this.cacheEnabled) {
+            return this.teacherRepository.findAll();
+        }
+        return this.snapshot.teachers;
     }
 
     public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+        Snapshot current = this.snapshot;
+        if (this.cacheEnabled && current.byId.containsKey(id)) {
+            return current.byId.get(id);
+        }
+
+        Teacher teacher = this.teacherRepository.findById(id).orElse(null);
+        if (teacher != null && this.cacheEnabled) {
+            putIfUnchanged(current, teacher);
+        }
+        return teacher;
+    }
+
+    public Teacher create(Teacher teacher) {
+        teacher.setId(null);
+        Teacher created = this.teacherRepository.saveAndFlush(teacher);
+        changed(created, null);
+        return created;
+    }
+
+    public Teacher update(Long id, Teacher teacher) {
+        Teacher existing = this.teacherRepository.findById(id).orElseThrow(NotFoundException::new);
+        existing.setFirstName(teacher.getFirstName());
+        existing.setLastName(teacher.getLastName());
+
+        Teacher updated = this.teacherRepository.saveAndFlush(existing);
+        changed(updated, null);
+        return updated;
+    }
+
+    // A teacher still assigned to sessions is kept; the caller has to reassign or delete them first.
+    public void delete(Long id) {
+        try {
+            this.teacherRepository.deleteById(id);
+        } catch (EmptyResultDataAccessException e) {
+            throw new NotFoundException();
+        } catch (DataIntegrityViolationException e) {
+            throw new ConflictException();
+        }
+        changed(null, id);
+    }
+
+    // The snapshot is replaced before the version moves, so a request that sees the new version reads the new data.
+    private void changed(Teacher put, Long removedId) {
+        if (this.cacheEnabled) {
+            if (put != null) {
+                put(put);
+            } else {
+                remove(removedId);
+            }
+        }
+        this.catalogVersionService.changed(CatalogVersionService.Catalog.TEACHERS);
+    }
+
+    private synchronized void put(Teacher teacher) {
+        Map<Long, Teacher> byId = new TreeMap<>(this.snapshot.byId);
+        byId.put(teacher.getId(), teacher);
+        this.snapshot = new Snapshot(byId.values());
+    }
+
+    // A write since the lookup started may have changed or deleted the row that was read; it is not cached then.
+    private synchronized void putIfUnchanged(Snapshot expected, Teacher teacher) {
+        if (this.snapshot == expected) {
+            put(teacher);
+        }
+    }
+
+    private synchronized void remove(Long id) {
+        Map<Long, Teacher> byId = new TreeMap<>(this.snapshot.byId);
+        byId.remove(id);
+        this.snapshot = new Snapshot(byId.values());
+    }
+
+    private static final class Snapshot {
+        private final Map<Long, Teacher> byId;
+        private final List<Teacher> teachers;
+
+        private Snapshot(Collection<Teacher> teachers) {
+            Map<Long, Teacher> byId = new TreeMap<>();
+            teachers.forEach(teacher -> byId.put(teacher.getId(), teacher));
+            this.byId = Collections.unmodifiableMap(byId);
+            this.teachers = Collections.unmodifiableList(new ArrayList<>(byId.values()));
+        }
     }
 }
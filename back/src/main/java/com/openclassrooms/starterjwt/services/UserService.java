@@ -1,9 +1,18 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
@@ -19,4 +28,30 @@ public class UserService {
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    // One query for all ids, in the given order without duplicates; any unknown id rejects the whole lookup.
+    public List<User> findAllById(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.contains(null)) {
+            throw new BadRequestException();
+        }
+
+        Map<Long, User> users = new HashMap<>();
+        for (User user : this.userRepository.findAllById(uniqueIds)) {
+            users.put(user.getId(), user);
+        }
+        if (users.size() != uniqueIds.size()) {
+            throw new BadRequestException();
+        }
+
+        List<User> result = new ArrayList<>(uniqueIds.size());
+        for (Long id : uniqueIds) {
+            result.add(users.get(id));
+        }
+        return result;
+    }
 }
@@ -1,32 +1,59 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.services.SessionService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @AutoConfigureMockMvc
@@ -45,6 +72,14 @@ class SessionControllerTest {
     private UserRepository userRepository;
     @Autowired
     private SessionService sessionService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private SessionMapper sessionMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JwtUtils jwtUtils;
 
     @BeforeEach
     void setup() {
@@ -99,6 +134,262 @@ class SessionControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testFindAll_WithPageSize_ShouldReturnNextCursor() throws Exception {
+        Teacher teacher = new Teacher();
+        teacher.setFirstName("John");
+        teacher.setLastName("Doe");
+        teacherRepository.save(teacher);
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            Session session = new Session();
+            session.setName("Session " + i);
+            session.setDescription("A relaxing yoga session.");
+            session.setDate(new Date(now + i * 60000L));
+            session.setTeacher(teacher);
+            sessionRepository.save(session);
+        }
+
+        MvcResult firstPage = mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                        .param("size", "2")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name", is("Session 0")))
+                .andExpect(jsonPath("$[1].name", is("Session 1")))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                        .param("size", "2")
+                        .param("cursor", firstPage.getResponse().getHeader("X-Next-Cursor"))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Session 2")))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testFindAll_WithoutSizeAndCursor_ShouldReturnDefaultPageWithCursor() throws Exception {
+        Teacher teacher = new Teacher();
+        teacher.setFirstName("John");
+        teacher.setLastName("Doe");
+        teacherRepository.save(teacher);
+
+        long now = System.currentTimeMillis();
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Session session = new Session();
+            session.setName("Session " + i);
+            session.setDescription("A relaxing yoga session.");
+            session.setDate(new Date(now + i * 60000L));
+            session.setTeacher(teacher);
+            sessions.add(session);
+        }
+        sessionRepository.saveAll(sessions);
+
+        MvcResult firstPage = mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(50)))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                        .param("cursor", firstPage.getResponse().getHeader("X-Next-Cursor"))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(10)))
+                .andExpect(jsonPath("$[0].name", is("Session 50")))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testFindAll_WithTeacherAndDateFilters_ShouldReturnMatchingSessions() throws Exception {
+        Teacher teacher1 = new Teacher();
+        teacher1.setFirstName("John");
+        teacher1.setLastName("Doe");
+        teacherRepository.save(teacher1);
+
+        Teacher teacher2 = new Teacher();
+        teacher2.setFirstName("Jane");
+        teacher2.setLastName("Smith");
+        teacherRepository.save(teacher2);
+
+        Session past = new Session();
+        past.setName("Past Session");
+        past.setDescription("A relaxing yoga session.");
+        past.setDate(new GregorianCalendar(2020, Calendar.JANUARY, 15).getTime());
+        past.setTeacher(teacher1);
+        sessionRepository.save(past);
+
+        Session upcoming = new Session();
+        upcoming.setName("Upcoming Session");
+        upcoming.setDescription("A relaxing yoga session.");
+        upcoming.setDate(new GregorianCalendar(2030, Calendar.JANUARY, 15).getTime());
+        upcoming.setTeacher(teacher1);
+        sessionRepository.save(upcoming);
+
+        Session otherTeacher = new Session();
+        otherTeacher.setName("Other Teacher Session");
+        otherTeacher.setDescription("A relaxing yoga session.");
+        otherTeacher.setDate(new GregorianCalendar(2030, Calendar.JANUARY, 16).getTime());
+        otherTeacher.setTeacher(teacher2);
+        sessionRepository.save(otherTeacher);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                        .param("from", "2025-01-01")
+                        .param("to", "2031-01-01")
+                        .param("teacherId", teacher1.getId().toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Upcoming Session")));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testFindAll_ManyParticipants_ShouldRunFixedNumberOfStatements() throws Exception {
+        Teacher teacher = new Teacher();
+        teacher.setFirstName("John");
+        teacher.setLastName("Doe");
+        teacherRepository.save(teacher);
+
+        List<Long> sessionIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Session session = new Session();
+            session.setName("Session " + i);
+            session.setDescription("A relaxing yoga session.");
+            session.setDate(new Date());
+            session.setTeacher(teacher);
+            sessionIds.add(sessionRepository.save(session).getId());
+        }
+        for (int i = 0; i < 4; i++) {
+            User user = new User();
+            user.setFirstName("Ivan");
+            user.setLastName("Ivanov");
+            user.setEmail("user" + i + "@example.com");
+            userRepository.save(user);
+            for (Long sessionId : sessionIds) {
+                sessionService.participate(sessionId, user.getId());
+            }
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(3)))
+                    .andExpect(jsonPath("$[0].teacher_id", is(teacher.getId().intValue())))
+                    .andExpect(jsonPath("$[2].participantCount", is(4)))
+                    .andExpect(jsonPath("$[2].users").doesNotExist());
+            assertEquals(1, statistics.getPrepareStatementCount());
+
+            statistics.clear();
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/session/" + sessionIds.get(0))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.users", hasSize(4)));
+            assertEquals(2, statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    void testFindAll_AuthenticatedUser_ShouldFlagBookedSessions() throws Exception {
+        User user = new User();
+        user.setEmail("user@example.com");
+        userRepository.save(user);
+
+        Session booked = new Session();
+        booked.setName("Booked");
+        booked.setDescription("A relaxing yoga session.");
+        booked.setDate(new Date(1000000L));
+        booked = sessionRepository.save(booked);
+        Session other = new Session();
+        other.setName("Other");
+        other.setDescription("A relaxing yoga session.");
+        other.setDate(new Date(2000000L));
+        sessionRepository.save(other);
+        sessionService.participate(booked.getId(), user.getId());
+
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(user.getId())
+                .username(user.getEmail())
+                .admin(false)
+                .password("password")
+                .build();
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session").with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].participantCount", is(1)))
+                .andExpect(jsonPath("$[0].bookedByMe", is(true)))
+                .andExpect(jsonPath("$[1].participantCount", is(0)))
+                .andExpect(jsonPath("$[1].bookedByMe", is(false)));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testFindAll_Unchanged_ShouldReturnNotModifiedUntilSessionWritten() throws Exception {
+        Teacher teacher = new Teacher();
+        teacher.setFirstName("John");
+        teacher.setLastName("Doe");
+        teacherRepository.save(teacher);
+
+        MvcResult first = mockMvc.perform(MockMvcRequestBuilders.get("/api/session"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("no-cache")))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("Yoga Session");
+        sessionDto.setDescription("A relaxing yoga session.");
+        sessionDto.setDate(new Date());
+        sessionDto.setTeacher_id(teacher.getId());
+        sessionDto.setUsers(new ArrayList<>());
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testFindAll_InvalidCursor_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                        .param("cursor", "not-a-cursor")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testFindAll_InvalidPageSize_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session")
+                        .param("size", "0")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(username = "testuser", roles = {"USER"})
     void testFindById_Success() throws Exception {
@@ -161,6 +452,335 @@ class SessionControllerTest {
                 .anyMatch(session -> session.getName().equals("Yoga Session")));
     }
 
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testCreate_ManyParticipants_ShouldResolveUsersWithOneQuery() throws Exception {
+        Teacher teacher = new Teacher();
+        teacher.setFirstName("John");
+        teacher.setLastName("Doe");
+        teacherRepository.save(teacher);
+
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            User user = new User();
+            user.setEmail("attendee" + i + "@example.com");
+            userIds.add(userRepository.save(user).getId());
+        }
+
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("Yoga Session");
+        sessionDto.setDescription("A relaxing yoga session.");
+        sessionDto.setDate(new Date());
+        sessionDto.setTeacher_id(teacher.getId());
+        sessionDto.setUsers(userIds);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            sessionMapper.toEntity(sessionDto);
+            // One select for the teacher and one for all the users.
+            assertEquals(2, statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(50)));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testCreate_UnknownUser_ShouldReturnBadRequest() throws Exception {
+        User user = new User();
+        user.setEmail("attendee@example.com");
+        userRepository.save(user);
+
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("Yoga Session");
+        sessionDto.setDescription("A relaxing yoga session.");
+        sessionDto.setDate(new Date());
+        sessionDto.setTeacher_id(1L);
+        sessionDto.setUsers(List.of(user.getId(), user.getId() + 1000));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(status().isBadRequest());
+
+        assertTrue(sessionRepository.findAll().isEmpty());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testCreateAll_ShouldBatchInsertValidItemsAndReportInvalidOnes() throws Exception {
+        Teacher teacher = new Teacher();
+        teacher.setFirstName("John");
+        teacher.setLastName("Doe");
+        teacherRepository.save(teacher);
+        User user = new User();
+        user.setEmail("attendee@example.com");
+        userRepository.save(user);
+        User otherUser = new User();
+        otherUser.setEmail("other.attendee@example.com");
+        userRepository.save(otherUser);
+
+        List<SessionDto> sessionDtos = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            SessionDto sessionDto = new SessionDto();
+            sessionDto.setName("Session " + i);
+            sessionDto.setDescription("A relaxing yoga session.");
+            sessionDto.setDate(new Date(1000000L + i));
+            sessionDto.setTeacher_id(teacher.getId());
+            sessionDto.setUsers(i == 0 ? List.of(user.getId()) : null);
+            sessionDtos.add(sessionDto);
+        }
+        sessionDtos.get(10).setName(null);
+        sessionDtos.get(20).setTeacher_id(teacher.getId() + 1000);
+        sessionDtos.get(30).setCapacity(1);
+        sessionDtos.get(30).setUsers(List.of(user.getId(), otherUser.getId()));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/session/bulk")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(sessionDtos)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(2000)))
+                    .andExpect(jsonPath("$[0].errors", hasSize(0)))
+                    .andExpect(jsonPath("$[10].id").doesNotExist())
+                    .andExpect(jsonPath("$[10].errors[0]", is("name: must not be blank")))
+                    .andExpect(jsonPath("$[20].errors[0]", is("teacher_id: unknown teacher " + (teacher.getId() + 1000))))
+                    .andExpect(jsonPath("$[30].id").doesNotExist())
+                    .andExpect(jsonPath("$[30].errors[0]", is("users: 2 participants exceed the capacity of 1")));
+            // Batched inserts and id blocks: far fewer statements than the 1997 rows written.
+            assertTrue(statistics.getPrepareStatementCount() < 100);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        assertEquals(1997, sessionRepository.count());
+        assertEquals(1, sessionService.findPage(null, null, null, user.getId(), null, null, 10).size());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testCreateAll_EmptyList_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/session/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testExport_Ndjson_ShouldStreamSessionsInRangeWithParticipants() throws Exception {
+        Long first = createExportedSession("Morning Flow", new Date(1000000L));
+        Long second = createExportedSession("Evening, Flow", new Date(2000000L));
+        createExportedSession("Out of range", new Date(9000000L));
+        User user = new User();
+        user.setEmail("test@example.com");
+        userRepository.save(user);
+        sessionService.participate(first, user.getId());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/session/export")
+                        .param("from", "1970-01-01T00:00:00.000Z")
+                        .param("to", "1970-01-01T00:50:00.000Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(2, lines.length);
+        SessionDto exported = objectMapper.readValue(lines[0], SessionDto.class);
+        assertEquals(first, exported.getId());
+        assertEquals(List.of(user.getId()), exported.getUsers());
+        assertEquals(second, objectMapper.readValue(lines[1], SessionDto.class).getId());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testExport_Csv_ShouldQuoteFields() throws Exception {
+        Long id = createExportedSession("Evening, Flow", new Date(2000000L));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/session/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(2, lines.length);
+        assertEquals("id,name,date,teacher_id,description,capacity,users,createdAt,updatedAt", lines[0]);
+        assertTrue(lines[1].startsWith(id + ",\"Evening, Flow\",1970-01-01T00:33:20Z,,A relaxing yoga session.,,,"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testStream_ShouldPushChangeEvents() throws Exception {
+        MvcResult stream = mockMvc.perform(MockMvcRequestBuilders.get("/api/session/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Long id = createExportedSession("Morning Flow", new Date());
+        User user = new User();
+        user.setEmail("test@example.com");
+        userRepository.save(user);
+        sessionService.participate(id, user.getId());
+
+        String expected = "event:participant_joined\ndata:{\"type\":\"participant_joined\",\"sessionId\":" + id
+                + ",\"userId\":" + user.getId() + "}";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!stream.getResponse().getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        String events = stream.getResponse().getContentAsString();
+        assertTrue(events.contains(expected), events);
+        assertFalse(events.contains("event:created"), "sessions saved through the repository are not announced");
+        stream.getRequest().getAsyncContext().complete();
+    }
+
+    @Test
+    void testStream_WithStreamToken_ShouldSubscribeWithoutAuthorizationHeader() throws Exception {
+        User user = userRepository.save(new User("streamer@example.com", "Doe", "John", "password", false));
+        String accessToken = jwtUtils.generateJwtToken(UserDetailsImpl.builder().id(user.getId())
+                .username(user.getEmail()).firstName("John").lastName("Doe").admin(false).build());
+
+        MvcResult tokenResult = mockMvc.perform(MockMvcRequestBuilders.post("/api/session/stream/token")
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").isString())
+                .andReturn();
+        String streamToken = objectMapper.readTree(tokenResult.getResponse().getContentAsString()).get("token").asText();
+
+        MvcResult stream = mockMvc.perform(MockMvcRequestBuilders.get("/api/session/stream").param("token", streamToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        stream.getRequest().getAsyncContext().complete();
+
+        // Each token is only good where its type is expected.
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/stream").param("token", accessToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session").param("token", streamToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session").header("Authorization", "Bearer " + streamToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testChanges_ShouldReturnWrittenSessionsAndTombstones() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Session session = new Session();
+            session.setName("Synced Session " + i);
+            session.setDescription("A relaxing yoga session.");
+            session.setDate(new Date());
+            ids.add(sessionRepository.saveAndFlush(session).getId());
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/changes").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reset", is(true)))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andExpect(jsonPath("$.sessions", hasSize(1)));
+
+        MvcResult full = mockMvc.perform(MockMvcRequestBuilders.get("/api/session/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reset", is(true)))
+                .andExpect(jsonPath("$.hasMore", is(false)))
+                .andExpect(jsonPath("$.sessions", hasSize(2)))
+                .andReturn();
+        String watermark = objectMapper.readTree(full.getResponse().getContentAsString()).get("watermark").asText();
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/api/session/" + ids.get(0)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/changes").param("since", watermark))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reset", is(false)))
+                .andExpect(jsonPath("$.deleted", hasItem(ids.get(0).intValue())))
+                .andExpect(jsonPath("$.sessions[*].id", not(hasItem(ids.get(0).intValue()))));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testChanges_PagingThroughOldSessions_ShouldCompleteWithoutReset() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Session session = new Session();
+            session.setName("Old Session " + i);
+            session.setDescription("A relaxing yoga session.");
+            session.setDate(new Date());
+            ids.add(sessionRepository.saveAndFlush(session).getId());
+        }
+        // Older than the 30 day deletion log retention, at the millisecond precision of the DATETIME(3) column.
+        jdbcTemplate.update("UPDATE SESSIONS SET updated_at = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(40).truncatedTo(ChronoUnit.MILLIS)));
+
+        List<Long> synced = new ArrayList<>();
+        String watermark = null;
+        for (int page = 0; page < 10; page++) {
+            MockHttpServletRequestBuilder changes = MockMvcRequestBuilders.get("/api/session/changes").param("size", "1");
+            if (watermark != null) {
+                changes.param("since", watermark);
+            }
+            JsonNode response = objectMapper.readTree(mockMvc.perform(changes)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            assertEquals(watermark == null, response.get("reset").asBoolean());
+            response.get("sessions").forEach(session -> synced.add(session.get("id").asLong()));
+            watermark = response.get("watermark").asText();
+            if (!response.get("hasMore").asBoolean()) {
+                break;
+            }
+        }
+
+        assertEquals(ids, synced);
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testChanges_InvalidWatermark_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/changes").param("since", "not-a-watermark"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testAcceptsGzip_ShouldHonourQValues() {
+        assertTrue(SessionController.acceptsGzip("gzip, deflate, br"));
+        assertTrue(SessionController.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(SessionController.acceptsGzip("*"));
+        assertFalse(SessionController.acceptsGzip(null));
+        assertFalse(SessionController.acceptsGzip("identity"));
+        assertFalse(SessionController.acceptsGzip("gzip;q=0"));
+        assertFalse(SessionController.acceptsGzip("gzip;q=0.0, *;q=1"));
+        assertFalse(SessionController.acceptsGzip("*;q=0"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void testExport_UnknownFormat_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Long createExportedSession(String name, Date date) {
+        Session session = new Session();
+        session.setName(name);
+        session.setDescription("A relaxing yoga session.");
+        session.setDate(date);
+        return sessionRepository.save(session).getId();
+    }
+
     @Test
     @WithMockUser(username = "admin", roles = {"ADMIN"})
     void testCreate_MissingFields() throws Exception {
@@ -298,6 +918,29 @@ class SessionControllerTest {
         assertTrue(sessionService.getById(session.getId()).getUsers().contains(user));
     }
 
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void testParticipate_AlreadyParticipating_ShouldReturnBadRequest() throws Exception {
+        Session session = new Session();
+        session.setName("Yoga Session");
+        session.setDescription("A relaxing yoga session.");
+        session.setDate(new Date());
+        session = sessionRepository.save(session);
+
+        User user = new User();
+        user.setFirstName("Ivan");
+        user.setLastName("Ivanov");
+        user.setEmail("test@example.com");
+        userRepository.save(user);
+
+        sessionService.participate(session.getId(), user.getId());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/session/" + session.getId() + "/participate/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        assertEquals(1, sessionService.getById(session.getId()).getUsers().size());
+    }
+
     @Test
     @WithMockUser(username = "user", roles = {"USER"})
     void testParticipate_SessionNotFound() throws Exception {
@@ -412,4 +1055,52 @@ class SessionControllerTest {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void testWaitlist_FullSession_ShouldJoinReportPositionAndLeave() throws Exception {
+        Session session = new Session();
+        session.setName("Yoga Session");
+        session.setDescription("A relaxing yoga session.");
+        session.setDate(new Date());
+        session.setCapacity(1);
+        session = sessionRepository.save(session);
+
+        User booked = new User();
+        booked.setEmail("booked@example.com");
+        userRepository.save(booked);
+        User waiting = new User();
+        waiting.setEmail("waiting@example.com");
+        userRepository.save(waiting);
+        sessionService.participate(session.getId(), booked.getId());
+
+        String waitlist = "/api/session/" + session.getId() + "/waitlist/" + waiting.getId();
+        mockMvc.perform(MockMvcRequestBuilders.post(waitlist))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.position", is(1)));
+        mockMvc.perform(MockMvcRequestBuilders.get(waitlist))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.position", is(1)));
+        mockMvc.perform(MockMvcRequestBuilders.delete(waitlist))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get(waitlist))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void testJoinWaitlist_SeatsLeft_ShouldReturnBadRequest() throws Exception {
+        Session session = new Session();
+        session.setName("Yoga Session");
+        session.setDescription("A relaxing yoga session.");
+        session.setDate(new Date());
+        session = sessionRepository.save(session);
+
+        User user = new User();
+        user.setEmail("test@example.com");
+        userRepository.save(user);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/session/" + session.getId() + "/waitlist/" + user.getId()))
+                .andExpect(status().isBadRequest());
+    }
+}
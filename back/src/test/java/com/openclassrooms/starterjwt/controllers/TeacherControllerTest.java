@@ -1,22 +1,37 @@
 package com.openclassrooms.starterjwt.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.TeacherDto;
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.CatalogVersionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.Date;
+
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -32,6 +47,8 @@ class TeacherControllerTest {
     private TeacherRepository teacherRepository;
     @Autowired
     private SessionRepository sessionRepository;
+    @Autowired
+    private CatalogVersionService catalogVersionService;
 
     @BeforeEach
     void setup() {
@@ -103,4 +120,94 @@ class TeacherControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
     }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testFindAll_Unchanged_ShouldReturnNotModifiedUntilVersionChanges() throws Exception {
+        MvcResult first = mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("no-cache")))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher")
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+
+        catalogVersionService.changed(CatalogVersionService.Catalog.TEACHERS);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    void testCreateUpdateDelete_Admin_ShouldWriteThrough() throws Exception {
+        MvcResult created = mockMvc.perform(MockMvcRequestBuilders.post("/api/teacher")
+                        .with(user(principal(true)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TeacherDto(null, "Doe", "John", null, null))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName", is("Doe")))
+                .andReturn();
+        Long id = objectMapper.readValue(created.getResponse().getContentAsString(), TeacherDto.class).getId();
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/teacher/" + id)
+                        .with(user(principal(true)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TeacherDto(null, "Smith", "Jane", null, null))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(id.intValue())))
+                .andExpect(jsonPath("$.firstName", is("Jane")));
+        assertEquals("Smith", teacherRepository.findById(id).get().getLastName());
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/api/teacher/" + id).with(user(principal(true))))
+                .andExpect(status().isOk());
+        assertFalse(teacherRepository.findById(id).isPresent());
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/api/teacher/" + id).with(user(principal(true))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testCreate_NotAdmin_ShouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/teacher")
+                        .with(user(principal(false)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new TeacherDto(null, "Doe", "John", null, null))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testDelete_TeacherWithSessions_ShouldReturnConflict() throws Exception {
+        Teacher teacher = new Teacher();
+        teacher.setFirstName("John");
+        teacher.setLastName("Doe");
+        teacherRepository.save(teacher);
+
+        Session session = new Session();
+        session.setName("Yoga Session");
+        session.setDescription("A relaxing yoga session.");
+        session.setDate(new Date());
+        session.setTeacher(teacher);
+        sessionRepository.save(session);
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/api/teacher/" + teacher.getId()).with(user(principal(true))))
+                .andExpect(status().isConflict());
+    }
+
+    private static UserDetailsImpl principal(boolean admin) {
+        return UserDetailsImpl.builder()
+                .id(1L)
+                .username("admin@example.com")
+                .admin(admin)
+                .password("password")
+                .build();
+    }
 }
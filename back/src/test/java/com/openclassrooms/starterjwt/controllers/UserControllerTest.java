@@ -1,23 +1,36 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.CachedUserDetailsService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.Date;
+
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -33,6 +46,12 @@ class UserControllerTest {
     private TeacherRepository teacherRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private CachedUserDetailsService cachedUserDetailsService;
+    @Autowired
+    private SessionService sessionService;
 
     @BeforeEach
     void setup() {
@@ -121,4 +140,80 @@ class UserControllerTest {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDelete_ShouldEvictCachedUserDetails() {
+        User user = new User();
+        user.setEmail("cached@example.com");
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setPassword("password");
+        user = userRepository.save(user);
+
+        assertEquals("cached@example.com", cachedUserDetailsService.loadUserByUsername("cached@example.com").getUsername());
+
+        userService.delete(user.getId());
+
+        assertThrows(UsernameNotFoundException.class, () -> cachedUserDetailsService.loadUserByUsername("cached@example.com"));
+    }
+
+    @Test
+    void testFindMySessions_ShouldReturnOnlyBookedSessionsByPage() throws Exception {
+        User user = new User();
+        user.setEmail("user@example.com");
+        user = userRepository.save(user);
+
+        Long first = createSession("Morning Flow", new Date(1000000L));
+        Long second = createSession("Evening Flow", new Date(2000000L));
+        createSession("Not Booked", new Date(1500000L));
+        sessionService.participate(first, user.getId());
+        sessionService.participate(second, user.getId());
+
+        String cursor = mockMvc.perform(MockMvcRequestBuilders.get("/api/user/me/sessions?size=1")
+                        .with(user(principal(user.getId(), false))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Morning Flow")))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/user/me/sessions?size=1&cursor=" + cursor)
+                        .with(user(principal(user.getId(), false))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Evening Flow")))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void testFindSessions_OtherUser_ShouldReturnUnauthorized() throws Exception {
+        User user = new User();
+        user.setEmail("user@example.com");
+        user = userRepository.save(user);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/user/" + user.getId() + "/sessions")
+                        .with(user(principal(user.getId() + 1, false))))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/user/" + user.getId() + "/sessions")
+                        .with(user(principal(user.getId() + 1, true))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    private Long createSession(String name, Date date) {
+        Session session = new Session();
+        session.setName(name);
+        session.setDescription("A relaxing yoga session.");
+        session.setDate(date);
+        return sessionRepository.save(session).getId();
+    }
+
+    private static UserDetailsImpl principal(Long id, boolean admin) {
+        return UserDetailsImpl.builder()
+                .id(id)
+                .username("user@example.com")
+                .admin(admin)
+                .password("password")
+                .build();
+    }
+}
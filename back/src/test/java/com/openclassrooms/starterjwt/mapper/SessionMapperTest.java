@@ -102,7 +102,7 @@ class SessionMapperTest {
         sessionDto.setUsers(List.of(user1.getId(), user2.getId()));
 
         Session session = sessionMapper.toEntity(sessionDto);
-        Session savedSession = sessionRepository.save(session);
+        Session savedSession = sessionRepository.saveAndFlush(session);
 
         assertNotNull(savedSession);
         assertNotNull(savedSession.getId());
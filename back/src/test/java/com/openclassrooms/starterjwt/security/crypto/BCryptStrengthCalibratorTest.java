@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BCryptStrengthCalibratorTest {
+
+    @Test
+    void testStrengthFor_ShouldPickHighestStrengthWithinTarget() {
+        assertEquals(12, BCryptStrengthCalibrator.strengthFor(250, 60, 10, 14));
+    }
+
+    @Test
+    void testStrengthFor_SlowHardware_ShouldKeepMinimumStrength() {
+        assertEquals(10, BCryptStrengthCalibrator.strengthFor(250, 400, 10, 14));
+    }
+
+    @Test
+    void testStrengthFor_FastHardware_ShouldBeCappedAtMaximum() {
+        assertEquals(14, BCryptStrengthCalibrator.strengthFor(250, 1, 10, 14));
+    }
+
+    @Test
+    void testCalibrate_WithoutTarget_ShouldReturnMinimumStrength() {
+        assertEquals(10, BCryptStrengthCalibrator.calibrate(0, 10, 14));
+    }
+}
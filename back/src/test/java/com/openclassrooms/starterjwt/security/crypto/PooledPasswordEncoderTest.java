@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PooledPasswordEncoderTest {
+    private final PasswordEncoder delegate = mock(PasswordEncoder.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PooledPasswordEncoder pooledPasswordEncoder = new PooledPasswordEncoder(delegate, 1, 1, 2, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        pooledPasswordEncoder.shutdown();
+    }
+
+    @Test
+    void testEncodeAndMatches_ShouldDelegateAndRecordLatency() {
+        when(delegate.encode("password")).thenReturn("hash");
+        when(delegate.matches("password", "hash")).thenReturn(true);
+
+        assertEquals("hash", pooledPasswordEncoder.encode("password"));
+        assertTrue(pooledPasswordEncoder.matches("password", "hash"));
+        assertEquals(1, meterRegistry.get("password.hash").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("password.hash").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    void testEncode_WhenQueueIsFull_ShouldFailFast() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.encode(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> pooledPasswordEncoder.encode("first"));
+        while (meterRegistry.get("password.hash.active").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> pooledPasswordEncoder.encode("second"));
+        while (pooledPasswordEncoder.getQueueDepth() < 1) {
+            Thread.sleep(5);
+        }
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                () -> pooledPasswordEncoder.encode("third"));
+        assertEquals(2, e.getRetryAfterSeconds());
+        assertEquals(1, meterRegistry.get("password.hash.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AuthEntryPointJwtTest {
+
+    @Test
+    void testCommence_ShouldWriteUnauthorizedJsonBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.setServletPath("/api/session");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new AuthEntryPointJwt().commence(request, response, new BadCredentialsException("Bad \"credentials\""));
+
+        JsonNode body = new ObjectMapper().readTree(response.getContentAsString());
+        assertEquals(401, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        assertEquals(401, body.get("status").asInt());
+        assertEquals("Unauthorized", body.get("error").asText());
+        assertEquals("Bad \"credentials\"", body.get("message").asText());
+        assertEquals("/api/session", body.get("path").asText());
+    }
+}
@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+import com.openclassrooms.starterjwt.security.WebSecurityConfig;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Per-request cost of the JWT filter on a public route, with and without the skip matcher.
+ * Run with {@code main} from the IDE, after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthTokenFilterBenchmark {
+    @Param({"true", "false"})
+    public boolean skipPublicRoutes;
+
+    private AuthTokenFilter filter;
+    private MockHttpServletRequest loginRequest;
+    private MockHttpServletResponse response;
+    private FilterChain filterChain;
+
+    @Setup
+    public void setUp() {
+        JwtTokenCache jwtTokenCache = new JwtTokenCache();
+        ReflectionTestUtils.setField(jwtTokenCache, "maxSize", 10000);
+
+        JwtFailureMonitor jwtFailureMonitor = new JwtFailureMonitor(10000, new SimpleMeterRegistry());
+
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "openclassrooms");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 900000);
+        ReflectionTestUtils.setField(jwtUtils, "jwtTokenCache", jwtTokenCache);
+        ReflectionTestUtils.setField(jwtUtils, "jwtFailureMonitor", jwtFailureMonitor);
+        jwtUtils.init();
+
+        RevokedTokenIndex revokedTokenIndex = new RevokedTokenIndex(mock(RevokedTokenRepository.class), 100000, 604800000L);
+        revokedTokenIndex.rebuild();
+
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "jwtFailureMonitor", jwtFailureMonitor);
+        ReflectionTestUtils.setField(filter, "revokedTokenIndex", revokedTokenIndex);
+        ReflectionTestUtils.setField(filter, "principalMode", AuthTokenFilter.CLAIMS_PRINCIPAL_MODE);
+        if (skipPublicRoutes) {
+            filter.setSkipRequestMatcher(WebSecurityConfig.publicRequestMatcher());
+        }
+
+        String token = jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
+                .password("test!1234")
+                .build());
+
+        // The front end keeps sending its token with every call, including the auth endpoints.
+        loginRequest = new MockHttpServletRequest("POST", "/api/auth/login");
+        loginRequest.setServletPath("/api/auth/login");
+        loginRequest.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+        filterChain = (req, res) -> { };
+    }
+
+    @Benchmark
+    public void publicRouteWithBearerToken() throws ServletException, IOException {
+        filter.doFilter(loginRequest, response, filterChain);
+        SecurityContextHolder.clearContext();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AuthTokenFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -1,16 +1,24 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
-import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.WebSecurityConfig;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.CachedUserDetailsService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -30,7 +38,11 @@ class AuthTokenFilterTest {
     @Mock
     private JwtUtils jwtUtils;
     @Mock
-    private UserDetailsServiceImpl userDetailsService;
+    private CachedUserDetailsService userDetailsService;
+    @Mock
+    private JwtFailureMonitor jwtFailureMonitor;
+    @Mock
+    private RevokedTokenIndex revokedTokenIndex;
     @Mock
     private HttpServletRequest request;
     @Mock
@@ -52,8 +64,7 @@ class AuthTokenFilterTest {
         String username = "testUser";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(jwt)).thenReturn(username);
+        when(jwtUtils.getClaimsFromJwtToken(jwt)).thenReturn(Jwts.claims().setSubject(username));
         when(userDetails.getAuthorities()).thenReturn(Collections.emptyList());
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
 
@@ -65,6 +76,103 @@ class AuthTokenFilterTest {
         assertNotNull(authentication);
         assertTrue(authentication.isAuthenticated());
         verify(filterChain, times(1)).doFilter(request, response);
+        verify(jwtUtils, never()).getUserNameFromJwtToken(anyString());
+    }
+
+    @Test
+    void testDoFilterInternal_ClaimsMode_ShouldAuthenticateWithoutLoadingUser() throws ServletException, IOException {
+        String jwt = "valid.jwt.token";
+        Claims claims = Jwts.claims().setSubject("testUser");
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(1L).username("testUser").admin(false).build();
+        ReflectionTestUtils.setField(authTokenFilter, "principalMode", AuthTokenFilter.CLAIMS_PRINCIPAL_MODE);
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+        when(jwtUtils.getClaimsFromJwtToken(jwt)).thenReturn(claims);
+        when(jwtUtils.getUserDetailsFromClaims(claims)).thenReturn(principal);
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertSame(principal, authentication.getPrincipal());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void testDoFilterInternal_UnknownUser_ShouldRecordFailureAndContinue() throws ServletException, IOException {
+        String jwt = "valid.jwt.token";
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+        when(jwtUtils.getClaimsFromJwtToken(jwt)).thenReturn(Jwts.claims().setSubject("deleted@example.com"));
+        when(userDetailsService.loadUserByUsername("deleted@example.com"))
+                .thenThrow(new UsernameNotFoundException("User Not Found with email: deleted@example.com"));
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(jwtFailureMonitor).record(eq(JwtFailure.UNKNOWN_USER), anyString());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void testDoFilterInternal_RevokedToken_ShouldNotAuthenticateUser() throws ServletException, IOException {
+        String jwt = "revoked.jwt.token";
+        Claims claims = Jwts.claims().setSubject("testUser").setId("token-id");
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+        when(jwtUtils.getClaimsFromJwtToken(jwt)).thenReturn(claims);
+        when(revokedTokenIndex.isRevoked(claims)).thenReturn(true);
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(jwtFailureMonitor).record(eq(JwtFailure.REVOKED), anyString());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void testDoFilter_PublicRoute_ShouldSkipTokenProcessing() throws ServletException, IOException {
+        MockHttpServletRequest loginRequest = new MockHttpServletRequest("POST", "/api/auth/login");
+        loginRequest.setServletPath("/api/auth/login");
+        loginRequest.addHeader("Authorization", "Bearer valid.jwt.token");
+        authTokenFilter.setSkipRequestMatcher(WebSecurityConfig.publicRequestMatcher());
+
+        authTokenFilter.doFilter(loginRequest, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(jwtUtils, revokedTokenIndex, userDetailsService);
+        verify(filterChain, times(1)).doFilter(loginRequest, response);
+    }
+
+    @Test
+    void testDoFilter_PreflightRequest_ShouldSkipTokenProcessing() throws ServletException, IOException {
+        MockHttpServletRequest preflight = new MockHttpServletRequest("OPTIONS", "/api/session");
+        preflight.setServletPath("/api/session");
+        preflight.addHeader(HttpHeaders.ORIGIN, "http://localhost:4200");
+        preflight.addHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "GET");
+        authTokenFilter.setSkipRequestMatcher(WebSecurityConfig.publicRequestMatcher());
+
+        authTokenFilter.doFilter(preflight, response, filterChain);
+
+        verifyNoInteractions(jwtUtils, revokedTokenIndex, userDetailsService);
+        verify(filterChain, times(1)).doFilter(preflight, response);
+    }
+
+    @Test
+    void testDoFilter_ProtectedRoute_ShouldProcessToken() throws ServletException, IOException {
+        MockHttpServletRequest sessionRequest = new MockHttpServletRequest("GET", "/api/session");
+        sessionRequest.setServletPath("/api/session");
+        sessionRequest.addHeader("Authorization", "Bearer inValid.jwt.token");
+        authTokenFilter.setSkipRequestMatcher(WebSecurityConfig.publicRequestMatcher());
+
+        when(jwtUtils.getClaimsFromJwtToken("inValid.jwt.token")).thenReturn(null);
+
+        authTokenFilter.doFilter(sessionRequest, response, filterChain);
+
+        verify(jwtUtils).getClaimsFromJwtToken("inValid.jwt.token");
+        verify(filterChain, times(1)).doFilter(sessionRequest, response);
     }
 
     @Test
@@ -72,7 +180,7 @@ class AuthTokenFilterTest {
         String jwt = "inValid.jwt.token";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(false);
+        when(jwtUtils.getClaimsFromJwtToken(jwt)).thenReturn(null);
 
         assertNull(SecurityContextHolder.getContext().getAuthentication());
 
@@ -0,0 +1,24 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JwtFailureMonitorTest {
+
+    @Test
+    void testRecord_ShouldCountEveryFailurePerType() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwtFailureMonitor jwtFailureMonitor = new JwtFailureMonitor(60000, meterRegistry);
+
+        for (int i = 0; i < 1000; i++) {
+            jwtFailureMonitor.record(JwtFailure.EXPIRED, "JWT expired");
+        }
+        jwtFailureMonitor.record(JwtFailure.BAD_SIGNATURE, "JWT signature does not match");
+
+        assertEquals(1000, jwtFailureMonitor.count(JwtFailure.EXPIRED));
+        assertEquals(1, meterRegistry.get("jwt.rejected").tag("reason", "bad_signature").counter().count());
+        assertEquals(0, jwtFailureMonitor.count(JwtFailure.MALFORMED));
+    }
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenCacheTest {
+    private JwtTokenCache jwtTokenCache;
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenCache = new JwtTokenCache();
+        ReflectionTestUtils.setField(jwtTokenCache, "maxSize", 2);
+    }
+
+    @Test
+    void testGet_AfterPut_ShouldReturnClaimsAndCountHit() {
+        Claims claims = Jwts.claims().setSubject("testUser").setExpiration(new Date(System.currentTimeMillis() + 60000));
+
+        assertNull(jwtTokenCache.get("token"));
+        Claims cached = jwtTokenCache.put("token", claims);
+
+        assertSame(cached, jwtTokenCache.get("token"));
+        assertEquals("testUser", cached.getSubject());
+        assertEquals(1, jwtTokenCache.getHitCount());
+        assertEquals(1, jwtTokenCache.getMissCount());
+    }
+
+    @Test
+    void testGet_ExpiredToken_ShouldReturnNullAndRemoveEntry() {
+        Claims claims = Jwts.claims().setSubject("testUser").setExpiration(new Date(System.currentTimeMillis() - 1000));
+        jwtTokenCache.put("token", claims);
+
+        assertNull(jwtTokenCache.get("token"));
+        assertEquals(0, jwtTokenCache.size());
+        assertEquals(1, jwtTokenCache.getMissCount());
+    }
+
+    @Test
+    void testPut_ShouldCacheReadOnlyCopy() {
+        Claims claims = Jwts.claims().setSubject("testUser").setExpiration(new Date(System.currentTimeMillis() + 60000));
+        Claims cached = jwtTokenCache.put("token", claims);
+
+        claims.setSubject("otherUser");
+
+        assertEquals("testUser", jwtTokenCache.get("token").getSubject());
+        assertThrows(UnsupportedOperationException.class, () -> cached.setSubject("otherUser"));
+    }
+
+    @Test
+    void testPut_WhenFull_ShouldTrimDownToLowWaterMark() {
+        ReflectionTestUtils.setField(jwtTokenCache, "maxSize", 8);
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+
+        for (int i = 0; i < 9; i++) {
+            jwtTokenCache.put("token" + i, Jwts.claims().setSubject("user" + i).setExpiration(expiration));
+        }
+
+        assertEquals(7, jwtTokenCache.size());
+        assertNotNull(jwtTokenCache.get("token8"));
+    }
+
+    @Test
+    void testPut_WhenFull_ShouldStayWithinMaxSize() {
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+
+        jwtTokenCache.put("token1", Jwts.claims().setSubject("user1").setExpiration(expiration));
+        jwtTokenCache.put("token2", Jwts.claims().setSubject("user2").setExpiration(expiration));
+        jwtTokenCache.put("token3", Jwts.claims().setSubject("user3").setExpiration(expiration));
+
+        assertTrue(jwtTokenCache.size() <= 2);
+        assertNotNull(jwtTokenCache.get("token3"));
+    }
+}
@@ -27,6 +27,8 @@ class JwtUtilsTest {
 
     @Autowired
     private JwtUtils jwtUtils;
+    @Autowired
+    private JwtTokenCache jwtTokenCache;
     @Value("${oc.app.jwtSecret}")
     private String jwtSecret;
 
@@ -51,6 +53,38 @@ class JwtUtilsTest {
         assertTrue(token.length() > 10);
     }
 
+    @Test
+    void testGenerateJwtToken_ShouldEmbedPrincipalClaims() {
+        UserDetailsImpl userDetails = new UserDetailsImpl(7L, "claimsUser", "Test", "User", true, "password");
+        Authentication authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+
+        String token = jwtUtils.generateJwtToken(authentication);
+        UserDetailsImpl principal = jwtUtils.getUserDetailsFromClaims(jwtUtils.getClaimsFromJwtToken(token));
+
+        assertEquals(7L, principal.getId());
+        assertEquals("claimsUser", principal.getUsername());
+        assertEquals("Test", principal.getFirstName());
+        assertEquals("User", principal.getLastName());
+        assertTrue(principal.getAdmin());
+        assertNull(principal.getPassword());
+    }
+
+    @Test
+    void testGenerateStreamToken_ShouldOnlyBeAcceptedAsStreamToken() {
+        UserDetailsImpl principal = new UserDetailsImpl(1L, "testUser", "Test", "User", false, "password");
+        String streamToken = jwtUtils.generateStreamToken(principal);
+
+        assertEquals("testUser", jwtUtils.getClaimsFromStreamToken(streamToken).getSubject());
+        assertNull(jwtUtils.getClaimsFromJwtToken(streamToken));
+        assertNull(jwtUtils.getClaimsFromRefreshToken(streamToken));
+        assertNull(jwtUtils.getClaimsFromStreamToken(jwtUtils.generateJwtToken(principal)));
+    }
+
+    @Test
+    void testGetUserDetailsFromClaims_WithoutIdClaim_ShouldReturnNull() {
+        assertNull(jwtUtils.getUserDetailsFromClaims(Jwts.claims().setSubject("testUser")));
+    }
+
     @Test
     void testGetUserNameFromJwtToken_ShouldReturnCorrectUsername() {
         String token = Jwts.builder()
@@ -78,6 +112,22 @@ class JwtUtilsTest {
         assertTrue(jwtUtils.validateJwtToken(token));
     }
 
+    @Test
+    void testGetClaimsFromJwtToken_ShouldReturnClaimsAndUseCacheOnSecondCall() {
+        String token = Jwts.builder()
+                .setSubject("cachedUser")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(new Date().getTime()
+                        + jwtExpirationMs))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+        long hits = jwtTokenCache.getHitCount();
+
+        assertEquals("cachedUser", jwtUtils.getClaimsFromJwtToken(token).getSubject());
+        assertEquals("cachedUser", jwtUtils.getClaimsFromJwtToken(token).getSubject());
+        assertEquals(hits + 1, jwtTokenCache.getHitCount());
+    }
+
     @Test
     void testValidateJwtToken_ShouldLogErrorForSignatureException() {
 
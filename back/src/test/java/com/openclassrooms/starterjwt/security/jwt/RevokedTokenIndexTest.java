@@ -0,0 +1,76 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.models.RevokedToken;
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RevokedTokenIndexTest {
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private RevokedTokenIndex revokedTokenIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(revokedTokenRepository.findActiveTokenIds(any())).thenReturn(Collections.singletonList("revoked-at-startup"));
+        revokedTokenIndex = new RevokedTokenIndex(revokedTokenRepository, 1000, 604800000L);
+        revokedTokenIndex.rebuild();
+    }
+
+    @Test
+    void testIsRevoked_UnknownToken_ShouldNotQueryDatabase() {
+        Claims claims = Jwts.claims().setId("fresh-token");
+
+        assertFalse(revokedTokenIndex.isRevoked(claims));
+        verify(revokedTokenRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void testIsRevoked_TokenLoadedAtStartup_ShouldBeConfirmedInDatabase() {
+        when(revokedTokenRepository.existsById("revoked-at-startup")).thenReturn(true);
+
+        assertTrue(revokedTokenIndex.isRevoked(Jwts.claims().setId("revoked-at-startup")));
+    }
+
+    @Test
+    void testRevoke_AlreadyRevoked_ShouldReturnFalse() {
+        when(revokedTokenRepository.insert(eq("token-id"), any(), any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertFalse(revokedTokenIndex.revoke("token-id", new Date()));
+    }
+
+    @Test
+    void testRevokeUser_ShouldRevokeTokensIssuedBefore() {
+        revokedTokenIndex.revokeUser(42L);
+        LocalDateTime revokedAt = LocalDateTime.now();
+        when(revokedTokenRepository.findById("user:42"))
+                .thenReturn(Optional.of(new RevokedToken("user:42", revokedAt, revokedAt.plusDays(7))));
+
+        Claims before = Jwts.claims().setId("old-token").setIssuedAt(new Date(System.currentTimeMillis() - 60000));
+        before.put("id", 42);
+        Claims after = Jwts.claims().setId("new-token").setIssuedAt(new Date(System.currentTimeMillis() + 60000));
+        after.put("id", 42);
+
+        assertTrue(revokedTokenIndex.isRevoked(before));
+        assertFalse(revokedTokenIndex.isRevoked(after));
+    }
+}
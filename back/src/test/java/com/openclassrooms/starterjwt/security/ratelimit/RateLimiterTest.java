@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    private static final long ONE_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void testTryAcquire_ShouldAllowBurstThenReject() {
+        RateLimiter rateLimiter = new RateLimiter(3, 1000);
+
+        assertEquals(0, rateLimiter.tryAcquire("user@example.com", 0));
+        assertEquals(0, rateLimiter.tryAcquire("user@example.com", 0));
+        assertEquals(0, rateLimiter.tryAcquire("user@example.com", 0));
+
+        long wait = rateLimiter.tryAcquire("user@example.com", 0);
+        assertEquals(ONE_MINUTE / 3, wait);
+        assertEquals(0, rateLimiter.tryAcquire("other@example.com", 0));
+    }
+
+    @Test
+    void testTryAcquire_ShouldRefillOverTime() {
+        RateLimiter rateLimiter = new RateLimiter(1, 1000);
+
+        assertEquals(0, rateLimiter.tryAcquire("user@example.com", 0));
+        assertTrue(rateLimiter.tryAcquire("user@example.com", ONE_MINUTE / 2) > 0);
+        assertEquals(0, rateLimiter.tryAcquire("user@example.com", ONE_MINUTE));
+    }
+
+    @Test
+    void testTryAcquire_ManyDistinctKeys_ShouldStayWithinMaxKeys() {
+        RateLimiter rateLimiter = new RateLimiter(5, 160);
+
+        for (int i = 0; i < 100_000; i++) {
+            rateLimiter.tryAcquire("10.0." + (i / 256) + "." + (i % 256), i);
+        }
+
+        assertTrue(rateLimiter.size() <= 160);
+    }
+
+    @Test
+    void testTryAcquire_FloodOfNewKeys_ShouldRejectThemWithoutRescanning() {
+        RateLimiter rateLimiter = new RateLimiter(5, 16_000);
+
+        int rejected = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (rateLimiter.tryAcquire("10." + (i / 65536) + "." + (i / 256 % 256) + "." + (i % 256), 0) > 0) {
+                rejected++;
+            }
+        }
+
+        assertTrue(rateLimiter.size() <= 16_000);
+        assertTrue(rejected >= 84_000, "rejected: " + rejected);
+        // No bucket goes idle at time 0: each congested stripe is scanned once, not once per new key.
+        assertTrue(rateLimiter.evictions() <= 16, "eviction passes: " + rateLimiter.evictions());
+    }
+
+    @Test
+    void testTryAcquire_FloodOfNewKeys_ShouldKeepThrottledKeys() {
+        RateLimiter rateLimiter = new RateLimiter(1, 160);
+
+        assertEquals(0, rateLimiter.tryAcquire("user@example.com", 0));
+        for (int i = 0; i < 10_000; i++) {
+            rateLimiter.tryAcquire("attacker" + i + "@example.com", 1);
+        }
+
+        assertTrue(rateLimiter.tryAcquire("user@example.com", 2) > 0);
+    }
+
+    @Test
+    void testTryAcquire_FullStripe_ShouldAcceptNewKeysOnceBucketsGoIdle() {
+        RateLimiter rateLimiter = new RateLimiter(1, 16);
+
+        for (int i = 0; i < 1_000; i++) {
+            rateLimiter.tryAcquire("user" + i + "@example.com", 0);
+        }
+        assertTrue(rateLimiter.tryAcquire("late@example.com", 0) > 0);
+
+        assertEquals(0, rateLimiter.tryAcquire("late@example.com", ONE_MINUTE));
+    }
+}
@@ -0,0 +1,135 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachedUserDetailsServiceTest {
+    @Mock
+    private UserDetailsServiceImpl delegate;
+
+    private CachedUserDetailsService cachedUserDetailsService;
+
+    private final UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("user@example.com").build();
+
+    @BeforeEach
+    void setUp() {
+        cachedUserDetailsService = new CachedUserDetailsService(delegate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cachedUserDetailsService, "maxSize", 100);
+        ReflectionTestUtils.setField(cachedUserDetailsService, "ttlMs", 60000L);
+    }
+
+    @Test
+    void testLoadUserByUsername_SecondCall_ShouldBeServedFromCache() {
+        when(delegate.loadUserByUsername("user@example.com")).thenReturn(userDetails);
+
+        assertSame(userDetails, cachedUserDetailsService.loadUserByUsername("user@example.com"));
+        assertSame(userDetails, cachedUserDetailsService.loadUserByUsername("user@example.com"));
+
+        verify(delegate, times(1)).loadUserByUsername("user@example.com");
+        assertEquals(0.5, cachedUserDetailsService.getHitRatio());
+    }
+
+    @Test
+    void testLoadUserByUsername_ExpiredEntry_ShouldReload() {
+        ReflectionTestUtils.setField(cachedUserDetailsService, "ttlMs", 0L);
+        when(delegate.loadUserByUsername("user@example.com")).thenReturn(userDetails);
+
+        cachedUserDetailsService.loadUserByUsername("user@example.com");
+        cachedUserDetailsService.loadUserByUsername("user@example.com");
+
+        verify(delegate, times(2)).loadUserByUsername("user@example.com");
+    }
+
+    @Test
+    void testEvictById_ShouldForceReload() {
+        when(delegate.loadUserByUsername("user@example.com")).thenReturn(userDetails);
+
+        cachedUserDetailsService.loadUserByUsername("user@example.com");
+        cachedUserDetailsService.evictById(1L);
+        cachedUserDetailsService.loadUserByUsername("user@example.com");
+
+        verify(delegate, times(2)).loadUserByUsername("user@example.com");
+    }
+
+    @Test
+    void testEvictById_DuringLoad_ShouldNotCacheLoadedDetails() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.loadUserByUsername("user@example.com")).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return userDetails;
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<UserDetails> result = executor.submit(() -> cachedUserDetailsService.loadUserByUsername("user@example.com"));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            cachedUserDetailsService.evictById(1L);
+            release.countDown();
+
+            assertSame(userDetails, result.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        cachedUserDetailsService.loadUserByUsername("user@example.com");
+
+        verify(delegate, times(2)).loadUserByUsername("user@example.com");
+    }
+
+    @Test
+    void testLoadUserByUsername_UnknownUser_ShouldNotBeCached() {
+        when(delegate.loadUserByUsername("unknown@example.com")).thenThrow(new UsernameNotFoundException("unknown"));
+
+        assertThrows(UsernameNotFoundException.class, () -> cachedUserDetailsService.loadUserByUsername("unknown@example.com"));
+        assertThrows(UsernameNotFoundException.class, () -> cachedUserDetailsService.loadUserByUsername("unknown@example.com"));
+
+        verify(delegate, times(2)).loadUserByUsername("unknown@example.com");
+    }
+
+    @Test
+    void testLoadUserByUsername_ConcurrentMisses_ShouldLoadOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.loadUserByUsername("user@example.com")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return userDetails;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<UserDetails>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cachedUserDetailsService.loadUserByUsername("user@example.com")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<UserDetails> result : results) {
+                assertSame(userDetails, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(delegate, times(1)).loadUserByUsername("user@example.com");
+    }
+}
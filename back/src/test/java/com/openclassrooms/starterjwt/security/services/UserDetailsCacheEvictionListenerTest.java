@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import com.openclassrooms.starterjwt.models.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDetailsCacheEvictionListenerTest {
+    @Mock
+    private CachedUserDetailsService cachedUserDetailsService;
+
+    @InjectMocks
+    private UserDetailsCacheEvictionListener listener;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testEvict_WithoutTransaction_ShouldEvictImmediately() {
+        listener.evict(new User().setId(1L));
+
+        verify(cachedUserDetailsService).evictById(1L);
+    }
+
+    @Test
+    void testEvict_InTransaction_ShouldWaitForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        listener.evict(new User().setId(1L));
+        verifyNoInteractions(cachedUserDetailsService);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> synchronization.afterCommit());
+        verify(cachedUserDetailsService).evictById(1L);
+    }
+}
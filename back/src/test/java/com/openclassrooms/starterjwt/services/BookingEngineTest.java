@@ -0,0 +1,211 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@ActiveProfiles("test")
+class BookingEngineTest {
+    @Autowired
+    private SessionService sessionService;
+    @Autowired
+    private SessionRepository sessionRepository;
+    @Autowired
+    private TeacherRepository teacherRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private SessionEventBroadcaster sessionEventBroadcaster;
+    @Autowired
+    private CatalogVersionService catalogVersionService;
+
+    private BookingEngine bookingEngine;
+
+    @BeforeEach
+    void setup() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+        userRepository.deleteAll();
+        bookingEngine = new BookingEngine(sessionService, sessionEventBroadcaster, catalogVersionService,
+                namedParameterJdbcTemplate, transactionManager, new SimpleMeterRegistry(), true, 2, 10000, 64, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookingEngine.shutdown();
+    }
+
+    @Test
+    void testParticipate_BookingRush_ShouldFillCapacityExactlyOnce() throws Exception {
+        Long sessionId = createSession(20);
+        List<Long> userIds = createUsers(100);
+
+        List<CompletableFuture<Void>> bookings = new ArrayList<>();
+        for (int attempt = 0; attempt < 5; attempt++) {
+            for (Long userId : userIds) {
+                bookings.add(bookingEngine.participate(sessionId, userId));
+            }
+        }
+
+        int booked = 0;
+        int full = 0;
+        int duplicate = 0;
+        for (CompletableFuture<Void> booking : bookings) {
+            try {
+                booking.get(30, TimeUnit.SECONDS);
+                booked++;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ConflictException) {
+                    full++;
+                } else if (e.getCause() instanceof BadRequestException) {
+                    duplicate++;
+                } else {
+                    throw e;
+                }
+            }
+        }
+
+        assertEquals(20, booked);
+        assertEquals(500, booked + full + duplicate);
+        assertEquals(20, jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_id) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId));
+        assertEquals(20, sessionRepository.findById(sessionId).get().getBookedSeats());
+    }
+
+    @Test
+    void testNoLongerParticipate_ShouldDeleteRowAndReleaseSeat() throws Exception {
+        Long sessionId = createSession(1);
+        List<Long> userIds = createUsers(2);
+
+        bookingEngine.participate(sessionId, userIds.get(0)).get(30, TimeUnit.SECONDS);
+        ExecutionException full = assertThrows(ExecutionException.class,
+                () -> bookingEngine.participate(sessionId, userIds.get(1)).get(30, TimeUnit.SECONDS));
+        assertInstanceOf(ConflictException.class, full.getCause());
+
+        bookingEngine.noLongerParticipate(sessionId, userIds.get(0)).get(30, TimeUnit.SECONDS);
+        bookingEngine.participate(sessionId, userIds.get(1)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, sessionRepository.findById(sessionId).get().getBookedSeats());
+        assertEquals(userIds.get(1), jdbcTemplate.queryForObject(
+                "SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, sessionId));
+    }
+
+    @Test
+    void testNoLongerParticipate_WithWaitlist_ShouldPromoteNextUser() throws Exception {
+        Long sessionId = createSession(1);
+        List<Long> userIds = createUsers(3);
+
+        bookingEngine.participate(sessionId, userIds.get(0)).get(30, TimeUnit.SECONDS);
+        sessionService.joinWaitlist(sessionId, userIds.get(1));
+        sessionService.joinWaitlist(sessionId, userIds.get(2));
+
+        bookingEngine.noLongerParticipate(sessionId, userIds.get(0)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, sessionRepository.findById(sessionId).get().getBookedSeats());
+        assertEquals(userIds.get(1), jdbcTemplate.queryForObject(
+                "SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, sessionId));
+        assertEquals(1, sessionService.getWaitlistPosition(sessionId, userIds.get(2)));
+    }
+
+    @Test
+    void testParticipate_UnknownSessionOrUser_ShouldFailWithNotFound() {
+        Long sessionId = createSession(null);
+
+        ExecutionException unknownSession = assertThrows(ExecutionException.class,
+                () -> bookingEngine.participate(9999L, 1L).get(30, TimeUnit.SECONDS));
+        ExecutionException unknownUser = assertThrows(ExecutionException.class,
+                () -> bookingEngine.participate(sessionId, 9999L).get(30, TimeUnit.SECONDS));
+
+        assertInstanceOf(NotFoundException.class, unknownSession.getCause());
+        assertInstanceOf(NotFoundException.class, unknownUser.getCause());
+    }
+
+    @Test
+    void testParticipate_BookedElsewhereDuringBatch_ShouldReplayCommandsAlone() throws Exception {
+        Long sessionId = createSession(5);
+        List<Long> userIds = createUsers(2);
+        bookingEngine.shutdown();
+
+        // Books the first user through SessionService right after the engine has read the bookings.
+        AtomicBoolean interleaved = new AtomicBoolean();
+        NamedParameterJdbcTemplate interleaving = new NamedParameterJdbcTemplate(jdbcTemplate) {
+            @Override
+            public void query(String sql, SqlParameterSource paramSource, RowCallbackHandler rch) {
+                super.query(sql, paramSource, rch);
+                if (sql.contains("FROM PARTICIPATE") && interleaved.compareAndSet(false, true)) {
+                    CompletableFuture.runAsync(() -> sessionService.participate(sessionId, userIds.get(0))).join();
+                }
+            }
+        };
+        bookingEngine = new BookingEngine(sessionService, sessionEventBroadcaster, catalogVersionService,
+                interleaving, transactionManager, new SimpleMeterRegistry(), true, 1, 10000, 64, 1);
+
+        CompletableFuture<Void> first = bookingEngine.participate(sessionId, userIds.get(0));
+        CompletableFuture<Void> second = bookingEngine.participate(sessionId, userIds.get(1));
+
+        ExecutionException duplicate = assertThrows(ExecutionException.class, () -> first.get(30, TimeUnit.SECONDS));
+        assertInstanceOf(BadRequestException.class, duplicate.getCause());
+        second.get(30, TimeUnit.SECONDS);
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId));
+        assertEquals(2, sessionRepository.findById(sessionId).get().getBookedSeats());
+    }
+
+    private Long createSession(Integer capacity) {
+        Session session = new Session();
+        session.setName("Booking Rush");
+        session.setDescription("A very popular yoga session.");
+        session.setDate(new Date());
+        session.setCapacity(capacity);
+        return sessionRepository.save(session).getId();
+    }
+
+    private List<Long> createUsers(int count) {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setEmail("engine" + i + "@example.com");
+            user.setPassword("password");
+            userIds.add(userRepository.save(user).getId());
+        }
+        return userIds;
+    }
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogVersionServiceTest {
+    private final CatalogVersionService catalogVersionService = new CatalogVersionService();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testChanged_OutsideTransaction_ShouldBumpImmediately() {
+        catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+
+        assertEquals(2, catalogVersionService.current(CatalogVersionService.Catalog.SESSIONS).getValue());
+    }
+
+    @Test
+    void testChanged_SustainedWrites_ShouldKeepLastModifiedAtTheClock() {
+        String etag = catalogVersionService.etag(CatalogVersionService.Catalog.SESSIONS);
+        for (int i = 0; i < 100; i++) {
+            catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        }
+
+        long lastModified = catalogVersionService.lastModified(CatalogVersionService.Catalog.SESSIONS);
+        assertTrue(lastModified <= System.currentTimeMillis(), "Last-Modified ran ahead of the clock");
+        assertEquals(0, lastModified % 1000);
+        assertNotEquals(etag, catalogVersionService.etag(CatalogVersionService.Catalog.SESSIONS));
+    }
+
+    @Test
+    void testChanged_ManyWritesInOneTransaction_ShouldBumpOnceOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        for (int i = 0; i < 100; i++) {
+            catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        }
+        catalogVersionService.changed(CatalogVersionService.Catalog.TEACHERS);
+
+        assertEquals(0, catalogVersionService.current(CatalogVersionService.Catalog.SESSIONS).getValue());
+        assertEquals(2, TransactionSynchronizationManager.getSynchronizations().size());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(1, catalogVersionService.current(CatalogVersionService.Catalog.SESSIONS).getValue());
+        assertEquals(1, catalogVersionService.current(CatalogVersionService.Catalog.TEACHERS).getValue());
+    }
+
+    @Test
+    void testChanged_ActorsInOneTransaction_ShouldReachListenersTogether() {
+        List<Set<Long>> notified = new ArrayList<>();
+        catalogVersionService.onChange(CatalogVersionService.Catalog.SESSIONS, notified::add);
+        TransactionSynchronizationManager.initSynchronization();
+        catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, 10L);
+        catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, 11L);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList(10L, 11L))), notified);
+    }
+}
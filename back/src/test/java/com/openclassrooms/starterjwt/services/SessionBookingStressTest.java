@@ -0,0 +1,181 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@ActiveProfiles("test")
+class SessionBookingStressTest {
+    private static final int CAPACITY = 25;
+    private static final int USERS = 100;
+    private static final int ATTEMPTS_PER_USER = 20;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private SessionService sessionService;
+    @Autowired
+    private SessionRepository sessionRepository;
+    @Autowired
+    private TeacherRepository teacherRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testParticipate_ConcurrentBookings_ShouldNeverOverbookOrDuplicate() throws Exception {
+        Session session = new Session();
+        session.setName("Booking Rush");
+        session.setDescription("A very popular yoga session.");
+        session.setDate(new Date());
+        session.setCapacity(CAPACITY);
+        Long sessionId = sessionRepository.save(session).getId();
+
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setEmail("rush" + i + "@example.com");
+            user.setFirstName("Ivan");
+            user.setLastName("Ivanov");
+            user.setPassword("password");
+            userIds.add(userRepository.save(user).getId());
+        }
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger full = new AtomicInteger();
+        AtomicInteger duplicate = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> bookings = new ArrayList<>();
+        try {
+            for (int attempt = 0; attempt < ATTEMPTS_PER_USER; attempt++) {
+                for (Long userId : userIds) {
+                    bookings.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            sessionService.participate(sessionId, userId);
+                            booked.incrementAndGet();
+                        } catch (ConflictException e) {
+                            full.incrementAndGet();
+                        } catch (BadRequestException e) {
+                            duplicate.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+            }
+
+            start.countDown();
+            for (Future<?> booking : bookings) {
+                // Any unexpected failure (lock timeout, constraint error) fails the test here.
+                booking.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(USERS * ATTEMPTS_PER_USER, booked.get() + full.get() + duplicate.get());
+        assertEquals(CAPACITY, booked.get());
+        assertEquals(CAPACITY, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId));
+        assertEquals(CAPACITY, jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_id) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId));
+        assertEquals(CAPACITY, sessionRepository.findById(sessionId).get().getBookedSeats());
+    }
+
+    @Test
+    void testNoLongerParticipate_ShouldReleaseSeatForNextBooking() {
+        Session session = new Session();
+        session.setName("Small Class");
+        session.setDescription("A private yoga session.");
+        session.setDate(new Date());
+        session.setCapacity(1);
+        Long sessionId = sessionRepository.save(session).getId();
+
+        User first = new User();
+        first.setEmail("first@example.com");
+        first.setPassword("password");
+        Long firstId = userRepository.save(first).getId();
+
+        User second = new User();
+        second.setEmail("second@example.com");
+        second.setPassword("password");
+        Long secondId = userRepository.save(second).getId();
+
+        sessionService.participate(sessionId, firstId);
+        assertThrows(ConflictException.class,
+                () -> sessionService.participate(sessionId, secondId));
+
+        sessionService.noLongerParticipate(sessionId, firstId);
+        sessionService.participate(sessionId, secondId);
+
+        assertEquals(1, sessionRepository.findById(sessionId).get().getBookedSeats());
+    }
+
+    @Test
+    void testNoLongerParticipate_WithWaitlist_ShouldPromoteInArrivalOrder() {
+        Session session = new Session();
+        session.setName("Small Class");
+        session.setDescription("A private yoga session.");
+        session.setDate(new Date());
+        session.setCapacity(1);
+        Long sessionId = sessionRepository.save(session).getId();
+
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("waiting" + i + "@example.com");
+            user.setPassword("password");
+            userIds.add(userRepository.save(user).getId());
+        }
+
+        sessionService.participate(sessionId, userIds.get(0));
+        assertEquals(1, sessionService.joinWaitlist(sessionId, userIds.get(1)));
+        assertEquals(2, sessionService.joinWaitlist(sessionId, userIds.get(2)));
+        assertThrows(BadRequestException.class,
+                () -> sessionService.joinWaitlist(sessionId, userIds.get(1)));
+
+        sessionService.noLongerParticipate(sessionId, userIds.get(0));
+
+        assertEquals(userIds.get(1), jdbcTemplate.queryForObject(
+                "SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, sessionId));
+        assertEquals(1, sessionRepository.findById(sessionId).get().getBookedSeats());
+        assertEquals(1, sessionService.getWaitlistPosition(sessionId, userIds.get(2)));
+        assertThrows(NotFoundException.class,
+                () -> sessionService.getWaitlistPosition(sessionId, userIds.get(1)));
+    }
+}
@@ -0,0 +1,88 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.payload.response.SessionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionEventBroadcasterTest {
+    private final SessionEventBroadcaster broadcaster =
+            new SessionEventBroadcaster(new ObjectMapper(), new SimpleMeterRegistry(), 4, 1, 60000, 60000);
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void testPublish_ShouldDeliverEventsInOrder() throws Exception {
+        RecordingEmitter subscriber = new RecordingEmitter(new CountDownLatch(0), 3);
+        broadcaster.subscribe(subscriber);
+
+        broadcaster.publish(SessionEvent.CREATED, 1L);
+        broadcaster.publish(SessionEvent.PARTICIPANT_JOINED, 1L, 2L);
+        broadcaster.publish(SessionEvent.DELETED, 1L);
+
+        assertTrue(subscriber.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(3, subscriber.events.size());
+        assertTrue(subscriber.events.get(1).contains("participant_joined"));
+        assertTrue(subscriber.events.get(1).contains("\"userId\":2"));
+    }
+
+    @Test
+    void testPublish_SlowSubscriber_ShouldDropBufferAndResyncWithoutBlockingOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release, 1);
+        broadcaster.subscribe(slow);
+
+        // The first event occupies the only sender thread; the next ones overflow the 4-slot buffer.
+        for (long id = 1; id <= 20; id++) {
+            broadcaster.publish(SessionEvent.CREATED, id);
+        }
+        release.countDown();
+
+        assertTrue(slow.delivered.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slow.events.stream().noneMatch(event -> event.contains("resync")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(slow.events.stream().anyMatch(event -> event.contains("resync")));
+        assertTrue(slow.events.size() < 20);
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch release;
+
+        private final CountDownLatch delivered;
+
+        private RecordingEmitter(CountDownLatch release, int expected) {
+            this.release = release;
+            this.delivered = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder event = new StringBuilder();
+            builder.build().forEach(part -> event.append(part.getData()));
+            events.add(event.toString());
+            delivered.countDown();
+        }
+    }
+}
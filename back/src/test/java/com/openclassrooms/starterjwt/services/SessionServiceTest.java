@@ -1,18 +1,28 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.payload.request.SessionCursor;
+import com.openclassrooms.starterjwt.payload.response.SessionEvent;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
-import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,9 +33,14 @@ import static org.mockito.Mockito.*;
 class SessionServiceTest {
     @Mock
     private SessionRepository sessionRepository;
-
     @Mock
-    private UserRepository userRepository;
+    private WaitlistRepository waitlistRepository;
+    @Mock
+    private SessionEventBroadcaster sessionEventBroadcaster;
+    @Mock
+    private SessionSyncService sessionSyncService;
+    @Mock
+    private CatalogVersionService catalogVersionService;
 
     @InjectMocks
     private SessionService sessionService;
@@ -50,6 +65,7 @@ class SessionServiceTest {
 
         sessionService.delete(sessionId);
         verify(sessionRepository, times(1)).deleteById(sessionId);
+        verify(sessionSyncService, times(1)).recordDeletion(sessionId);
     }
 
     @Test
@@ -73,6 +89,69 @@ class SessionServiceTest {
         verify(sessionRepository, times(1)).findAll();
     }
 
+    @Test
+    void testFindPage_WithCursorAndViewer_ShouldQueryAfterCursorPositionAndFlagBookedSessions() {
+        Date from = new Date(0);
+        Date cursorDate = new Date(1000);
+        SessionSummaryDto session1 = new SessionSummaryDto();
+        session1.setId(6L);
+        SessionSummaryDto session2 = new SessionSummaryDto();
+        session2.setId(7L);
+        when(sessionRepository.findPage(from, null, 2L, null, cursorDate, 5L, 11)).thenReturn(Arrays.asList(session1, session2));
+        when(sessionRepository.findBookedSessionIds(eq(10L), anyCollection())).thenReturn(Collections.singletonList(7L));
+
+        List<SessionSummaryDto> result = sessionService.findPage(from, null, 2L, null, 10L, new SessionCursor(cursorDate, 5L), 11);
+
+        assertFalse(result.get(0).isBookedByMe());
+        assertTrue(result.get(1).isBookedByMe());
+        verify(sessionRepository, never()).findParticipantIds(anyCollection());
+    }
+
+    @Test
+    void testFindPage_BookedIdsAsInteger_ShouldFlagBookedSessions() {
+        SessionSummaryDto session = new SessionSummaryDto();
+        session.setId(7L);
+        when(sessionRepository.findPage(null, null, null, null, null, null, 51)).thenReturn(Collections.singletonList(session));
+        // MySQL returns INT id columns of a native query as Integer.
+        when(sessionRepository.findBookedSessionIds(eq(10L), anyCollection())).thenReturn(Collections.singletonList(7));
+
+        List<SessionSummaryDto> result = sessionService.findPage(null, null, null, null, 10L, null, 51);
+
+        assertTrue(result.get(0).isBookedByMe());
+    }
+
+    @Test
+    void testFindPage_WithoutViewer_ShouldNotQueryParticipants() {
+        when(sessionRepository.findPage(null, null, null, null, null, null, 51))
+                .thenReturn(Collections.singletonList(new SessionSummaryDto()));
+
+        List<SessionSummaryDto> result = sessionService.findPage(null, null, null, null, null, null, 51);
+
+        assertEquals(1, result.size());
+        verify(sessionRepository, never()).findBookedSessionIds(any(), anyCollection());
+    }
+
+    @Test
+    void testGetDtoById_NoParticipants_ShouldReturnEmptyUserList() {
+        SessionDto session = new SessionDto();
+        session.setId(1L);
+        when(sessionRepository.findDtoById(1L)).thenReturn(session);
+        when(sessionRepository.findParticipantIds(anyCollection())).thenReturn(Collections.emptyList());
+
+        SessionDto result = sessionService.getDtoById(1L);
+
+        assertNotNull(result);
+        assertTrue(result.getUsers().isEmpty());
+    }
+
+    @Test
+    void testGetDtoById_NotFound_ShouldReturnNull() {
+        when(sessionRepository.findDtoById(1L)).thenReturn(null);
+
+        assertNull(sessionService.getDtoById(1L));
+        verify(sessionRepository, never()).findParticipantIds(anyCollection());
+    }
+
     @Test
     void testGetById_ShouldReturnSessionExist() {
         Long sessionId = 1L;
@@ -101,50 +180,62 @@ class SessionServiceTest {
         Session session = new Session();
         Long sessionId = 1L;
 
-        when(sessionRepository.save(session)).thenReturn(session);
+        when(sessionRepository.saveAndFlush(session)).thenReturn(session);
 
         Session result = sessionService.update(sessionId, session);
 
         assertEquals(sessionId, result.getId());
-        verify(sessionRepository, times(1)).save(session);
+        verify(sessionRepository, times(1)).saveAndFlush(session);
+        verify(sessionRepository, times(1)).recountSeats(sessionId);
     }
 
     @Test
-    void testParticipate_Success() {
+    void testUpdate_MoreUsersThanCapacity_ShouldThrowBadRequest() {
         Session session = new Session();
-        session.setUsers(new ArrayList<>());
+        session.setCapacity(1);
+        session.setUsers(Arrays.asList(new User().setId(10L), new User().setId(11L)));
+
+        assertThrows(BadRequestException.class, () -> sessionService.update(1L, session));
+
+        verify(sessionRepository, never()).saveAndFlush(any());
+        verify(sessionRepository, never()).recountSeats(anyLong());
+    }
+
+    @Test
+    void testParticipate_Success() {
         Long sessionId = 1L;
-        User user = new User();
         Long userId = 10L;
-
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(sessionRepository.save(any())).thenReturn(session);
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+        when(sessionRepository.addParticipant(sessionId, userId)).thenReturn(1);
 
         sessionService.participate(sessionId, userId);
 
-        assertTrue(session.getUsers().contains(user));
-        verify(sessionRepository, times(1)).save(session);
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(userRepository, times(1)).findById(userId);
+        verify(sessionRepository, times(1)).reserveSeat(sessionId);
+        verify(sessionRepository, times(1)).addParticipant(sessionId, userId);
+        verify(sessionEventBroadcaster, times(1)).publish(SessionEvent.PARTICIPANT_JOINED, sessionId, userId);
+        verify(catalogVersionService, times(1)).changed(CatalogVersionService.Catalog.SESSIONS, userId);
+        verify(sessionRepository, never()).findById(any());
+        verify(sessionRepository, never()).save(any(Session.class));
     }
 
     @Test
-    void testParticipate_UserNotFound() {
+    void testParticipate_SessionNotFound() {
         Long sessionId = 1L;
         Long userId = 10L;
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(0);
+        when(sessionRepository.existsById(sessionId)).thenReturn(false);
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(new Session()));
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
         assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
+        verify(sessionRepository, never()).addParticipant(any(), any());
     }
 
     @Test
-    void testParticipate_SessionNotFound() {
+    void testParticipate_UserNotFound() {
         Long sessionId = 1L;
         Long userId = 10L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
-        when(userRepository.findById(userId)).thenReturn(Optional.of(new User()));
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+        when(sessionRepository.addParticipant(sessionId, userId)).thenReturn(0);
+
         assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
     }
 
@@ -152,46 +243,55 @@ class SessionServiceTest {
     void testParticipate_UserAlreadyParticipating() {
         Long sessionId = 1L;
         Long userId = 10L;
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+        when(sessionRepository.addParticipant(sessionId, userId))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry for key 'PRIMARY'"));
 
-        User user = new User();
-        user.setId(userId);
-        List<User> userList = new ArrayList<>();
-        userList.add(user);
-        Session session = new Session();
-        session.setUsers(userList);
+        assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
+    }
 
+    @Test
+    void testParticipate_SessionFull_ShouldThrowConflict() {
+        Long sessionId = 1L;
+        Long userId = 10L;
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(0);
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(sessionRepository.countParticipant(sessionId, userId)).thenReturn(0L);
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        assertThrows(ConflictException.class, () -> sessionService.participate(sessionId, userId));
+        verify(sessionRepository, never()).addParticipant(any(), any());
+        verifyNoInteractions(catalogVersionService);
+    }
+
+    @Test
+    void testParticipate_SessionFullAndAlreadyParticipating_ShouldThrowBadRequest() {
+        Long sessionId = 1L;
+        Long userId = 10L;
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(0);
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(sessionRepository.countParticipant(sessionId, userId)).thenReturn(1L);
 
         assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
-        verify(sessionRepository, never()).save(any(Session.class));
     }
 
     @Test
     void testNoLongerParticipate_Success() {
         Long sessionId = 1L, userId = 2L;
-        User user = new User();
-        user.setId(userId);
-
-        List<User> userlist= new  ArrayList<>();
-        userlist.add(user);
-        Session session = new Session();
-        session.setUsers(userlist);
-
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(sessionRepository.save(any())).thenReturn(session);
+        when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(1);
 
         sessionService.noLongerParticipate(sessionId, userId);
 
-        assertFalse(session.getUsers().contains(user));
-        verify(sessionRepository, times(1)).save(session);
+        verify(sessionRepository, times(1)).removeParticipant(sessionId, userId);
+        verify(sessionRepository, times(1)).releaseSeat(sessionId);
+        verify(sessionRepository, never()).existsById(any());
+        verify(sessionRepository, never()).save(any(Session.class));
     }
 
     @Test
     void testNoLongerParticipate_SessionNotFound() {
         Long sessionId = 1L, userId = 2L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(0);
+        when(sessionRepository.existsById(sessionId)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
     }
@@ -199,11 +299,85 @@ class SessionServiceTest {
     @Test
     void testNoLongerParticipate_UserNotParticipating() {
         Long sessionId = 1L, userId = 2L;
-        Session session = new Session();
-        session.setUsers(new ArrayList<>());
-
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(0);
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
 
         assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
+        verify(sessionRepository, never()).releaseSeat(any());
+    }
+
+    @Test
+    void testNoLongerParticipate_WithWaitlist_ShouldPromoteNextUserAndKeepSeat() {
+        Long sessionId = 1L, userId = 2L;
+        WaitlistEntry next = new WaitlistEntry().setId(7L).setSessionId(sessionId).setUserId(3L);
+        when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(1);
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(sessionId)).thenReturn(Optional.of(next));
+        when(waitlistRepository.remove(7L)).thenReturn(1);
+        when(sessionRepository.addParticipantIfAbsent(sessionId, 3L)).thenReturn(1);
+
+        sessionService.noLongerParticipate(sessionId, userId);
+
+        verify(sessionRepository, times(1)).releaseSeat(sessionId);
+        verify(sessionRepository, times(1)).reserveSeat(sessionId);
+        verify(sessionRepository, times(1)).addParticipantIfAbsent(sessionId, 3L);
+    }
+
+    @Test
+    void testNoLongerParticipate_EmptyWaitlist_ShouldReleaseSeat() {
+        Long sessionId = 1L, userId = 2L;
+        when(sessionRepository.removeParticipant(sessionId, userId)).thenReturn(1);
+        when(sessionRepository.reserveSeat(sessionId)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(sessionId)).thenReturn(Optional.empty());
+
+        sessionService.noLongerParticipate(sessionId, userId);
+
+        verify(sessionRepository, times(2)).releaseSeat(sessionId);
+        verify(sessionRepository, never()).addParticipantIfAbsent(any(), any());
+    }
+
+    @Test
+    void testJoinWaitlist_SessionFull_ShouldReturnPosition() {
+        Long sessionId = 1L, userId = 2L;
+        when(sessionRepository.isFull(sessionId)).thenReturn(Optional.of(true));
+        when(sessionRepository.countParticipant(sessionId, userId)).thenReturn(0L);
+        when(waitlistRepository.join(sessionId, userId)).thenReturn(1);
+        when(waitlistRepository.findPosition(sessionId, userId)).thenReturn(3L);
+
+        assertEquals(3L, sessionService.joinWaitlist(sessionId, userId));
+    }
+
+    @Test
+    void testJoinWaitlist_SeatsLeft_ShouldThrowBadRequest() {
+        Long sessionId = 1L, userId = 2L;
+        when(sessionRepository.isFull(sessionId)).thenReturn(Optional.of(false));
+
+        assertThrows(BadRequestException.class, () -> sessionService.joinWaitlist(sessionId, userId));
+        verify(waitlistRepository, never()).join(any(), any());
+    }
+
+    @Test
+    void testJoinWaitlist_AlreadyWaiting_ShouldThrowBadRequest() {
+        Long sessionId = 1L, userId = 2L;
+        when(sessionRepository.isFull(sessionId)).thenReturn(Optional.of(true));
+        when(sessionRepository.countParticipant(sessionId, userId)).thenReturn(0L);
+        when(waitlistRepository.join(sessionId, userId))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+        assertThrows(BadRequestException.class, () -> sessionService.joinWaitlist(sessionId, userId));
+    }
+
+    @Test
+    void testJoinWaitlist_SessionNotFound() {
+        when(sessionRepository.isFull(1L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> sessionService.joinWaitlist(1L, 2L));
+    }
+
+    @Test
+    void testGetWaitlistPosition_NotWaiting_ShouldThrowNotFound() {
+        when(waitlistRepository.findPosition(1L, 2L)).thenReturn(0L);
+
+        assertThrows(NotFoundException.class, () -> sessionService.getWaitlistPosition(1L, 2L));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,154 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SessionSnapshotServiceTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final CatalogVersionService catalogVersionService = new CatalogVersionService();
+
+    @Mock
+    private SessionService sessionService;
+
+    private SessionSnapshotService snapshotService;
+
+    @AfterEach
+    void tearDown() {
+        if (snapshotService != null) {
+            snapshotService.shutdown();
+        }
+    }
+
+    @Test
+    void testRebuild_ShouldServeFirstPageAsJsonAndGzip() throws Exception {
+        when(sessionService.findPage(isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), eq(3)))
+                .thenReturn(sessions(3));
+        snapshotService = new SessionSnapshotService(sessionService, objectMapper, catalogVersionService, true, 2, 0, 60000);
+
+        SessionSnapshotService.Snapshot snapshot = awaitSnapshot();
+
+        JsonNode page = objectMapper.readTree(snapshot.body(Collections.emptySet()));
+        assertEquals(2, page.size());
+        assertEquals(1, page.get(0).get("id").asLong());
+        assertFalse(page.get(0).get("bookedByMe").asBoolean());
+        assertNotNull(snapshot.getNextCursor());
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(snapshot.getGzipBody()))) {
+            assertArrayEquals(snapshot.body(Collections.emptySet()), gzip.readAllBytes());
+        }
+
+        JsonNode booked = objectMapper.readTree(snapshot.body(Collections.singleton(2L)));
+        assertFalse(booked.get(0).get("bookedByMe").asBoolean());
+        assertTrue(booked.get(1).get("bookedByMe").asBoolean());
+    }
+
+    @Test
+    void testChanged_ManyWrites_ShouldRebuildOnce() throws Exception {
+        when(sessionService.findPage(isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), eq(51)))
+                .thenReturn(sessions(1));
+        snapshotService = new SessionSnapshotService(sessionService, objectMapper, catalogVersionService, true, 50, 200, 60000);
+        awaitSnapshot();
+
+        for (int i = 0; i < 20; i++) {
+            catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (findPageCalls() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(400);
+        assertEquals(2, findPageCalls());
+        assertEquals(catalogVersionService.current(CatalogVersionService.Catalog.SESSIONS).getValue(),
+                snapshotService.current(null).getVersion().getValue());
+    }
+
+    @Test
+    void testCurrent_OutdatedPastStalenessBound_ShouldReturnNull() throws Exception {
+        when(sessionService.findPage(isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), eq(51)))
+                .thenReturn(sessions(1));
+        snapshotService = new SessionSnapshotService(sessionService, objectMapper, catalogVersionService, true, 50, 0, 0);
+        awaitSnapshot();
+        snapshotService.shutdown();
+        Thread.sleep(5);
+
+        catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS);
+
+        assertNull(snapshotService.current(null));
+    }
+
+    @Test
+    void testCurrent_ViewerBookedSinceBuild_ShouldReturnNullForThatViewerOnly() throws Exception {
+        when(sessionService.findPage(isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), eq(51)))
+                .thenReturn(sessions(1));
+        snapshotService = new SessionSnapshotService(sessionService, objectMapper, catalogVersionService, true, 50, 0, 60000);
+        awaitSnapshot();
+        snapshotService.shutdown();
+        Thread.sleep(5);
+
+        catalogVersionService.changed(CatalogVersionService.Catalog.SESSIONS, 10L);
+
+        assertNull(snapshotService.current(10L));
+        assertNotNull(snapshotService.current(11L));
+        assertNotNull(snapshotService.current(null));
+    }
+
+    @Test
+    void testCurrent_Disabled_ShouldReturnNull() {
+        snapshotService = new SessionSnapshotService(sessionService, objectMapper, catalogVersionService, false, 50, 0, 60000);
+
+        assertNull(snapshotService.current(null));
+    }
+
+    private SessionSnapshotService.Snapshot awaitSnapshot() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (snapshotService.current(null) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        SessionSnapshotService.Snapshot snapshot = snapshotService.current(null);
+        assertNotNull(snapshot);
+        return snapshot;
+    }
+
+    private long findPageCalls() {
+        return mockingDetails(sessionService).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("findPage"))
+                .count();
+    }
+
+    private static List<SessionSummaryDto> sessions(int count) {
+        List<SessionSummaryDto> sessions = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            SessionSummaryDto session = new SessionSummaryDto();
+            session.setId(id);
+            session.setName("Yoga Session " + id);
+            session.setDate(new Date(id * 1000));
+            sessions.add(session);
+        }
+        return sessions;
+    }
+}
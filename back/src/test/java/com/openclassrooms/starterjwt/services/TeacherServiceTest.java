@@ -1,13 +1,14 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,16 +17,21 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class TeacherServiceTest {
-    @InjectMocks
     TeacherService teacherServiceUnderTest;
 
     @Mock
     private TeacherRepository teacherRepository;
+    @Mock
+    private CatalogVersionService catalogVersionService;
 
     Stream<Teacher> teachers;
     Teacher firstTeacher;
@@ -34,7 +40,7 @@ public class TeacherServiceTest {
 
     @BeforeEach
     public void init() {
-        teacherServiceUnderTest = new TeacherService(teacherRepository);
+        teacherServiceUnderTest = new TeacherService(teacherRepository, catalogVersionService, false);
         firstTeacher = Teacher.builder()
                 .id(0L)
                 .lastName("Krapabelle")
@@ -94,4 +100,59 @@ public class TeacherServiceTest {
         verify(teacherRepository).findById(3L);
         assertThat(actualTeacherList).isNull();
     }
+
+    @Test
+    public void testFindAll_CacheEnabled_ShouldServeTheSnapshotLoadedAtStartup() {
+        TeacherService cachedService = new TeacherService(teacherRepository, catalogVersionService, true);
+        when(teacherRepository.findAll()).thenReturn(List.of(thirdTeacher, firstTeacher, secondTeacher));
+        cachedService.load();
+
+        assertThat(cachedService.findAll()).containsExactly(firstTeacher, secondTeacher, thirdTeacher);
+        assertThat(cachedService.findById(1L)).isEqualTo(secondTeacher);
+
+        verify(teacherRepository, times(1)).findAll();
+        verify(teacherRepository, never()).findById(1L);
+    }
+
+    @Test
+    public void testFindById_CacheMiss_ShouldReadThroughOnce() {
+        TeacherService cachedService = new TeacherService(teacherRepository, catalogVersionService, true);
+        when(teacherRepository.findById(2L)).thenReturn(Optional.of(thirdTeacher));
+
+        assertThat(cachedService.findById(2L)).isEqualTo(thirdTeacher);
+        assertThat(cachedService.findById(2L)).isEqualTo(thirdTeacher);
+
+        verify(teacherRepository, times(1)).findById(2L);
+    }
+
+    @Test
+    public void testCreateAndDelete_CacheEnabled_ShouldUpdateSnapshotAndVersion() {
+        TeacherService cachedService = new TeacherService(teacherRepository, catalogVersionService, true);
+        when(teacherRepository.findAll()).thenReturn(List.of(firstTeacher));
+        cachedService.load();
+        Teacher newTeacher = Teacher.builder().lastName("Skinner").firstName("Seymour").build();
+        when(teacherRepository.saveAndFlush(newTeacher)).thenReturn(secondTeacher);
+
+        cachedService.create(newTeacher);
+        assertThat(cachedService.findAll()).containsExactly(firstTeacher, secondTeacher);
+
+        cachedService.delete(0L);
+        assertThat(cachedService.findAll()).containsExactly(secondTeacher);
+
+        verify(teacherRepository).deleteById(0L);
+        verify(catalogVersionService, times(2)).changed(CatalogVersionService.Catalog.TEACHERS);
+    }
+
+    @Test
+    public void testDelete_TeacherWithSessions_ShouldThrowConflictAndKeepCache() {
+        TeacherService cachedService = new TeacherService(teacherRepository, catalogVersionService, true);
+        when(teacherRepository.findAll()).thenReturn(List.of(firstTeacher));
+        cachedService.load();
+        doThrow(new DataIntegrityViolationException("fk")).when(teacherRepository).deleteById(0L);
+
+        assertThatThrownBy(() -> cachedService.delete(0L)).isInstanceOf(ConflictException.class);
+
+        assertThat(cachedService.findAll()).containsExactly(firstTeacher);
+        verify(catalogVersionService, never()).changed(CatalogVersionService.Catalog.TEACHERS);
+    }
 }
@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,9 +11,13 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -64,4 +69,34 @@ public class UserServiceTest {
 
         verify(userRepository).deleteById(0L);
     }
+
+    @Test
+    public void testFindAllById_shouldReturnUsersInRequestedOrderWithOneQuery() {
+        User other = User.builder()
+                .id(1L)
+                .email("other@example.com")
+                .lastName("Jane")
+                .firstName("Doe")
+                .password("passwd")
+                .admin(false)
+                .build();
+        when(userRepository.findAllById(Set.of(0L, 1L))).thenReturn(Arrays.asList(user, other));
+
+        List<User> users = userServiceUnderTest.findAllById(Arrays.asList(1L, 0L, 1L));
+
+        assertThat(users).containsExactly(other, user);
+        verify(userRepository).findAllById(Set.of(0L, 1L));
+    }
+
+    @Test
+    public void testFindAllById_shouldRejectUnknownIds() {
+        when(userRepository.findAllById(Set.of(0L, 42L))).thenReturn(List.of(user));
+
+        assertThrows(BadRequestException.class, () -> userServiceUnderTest.findAllById(Arrays.asList(0L, 42L)));
+    }
+
+    @Test
+    public void testFindAllById_shouldReturnEmptyListForNoIds() {
+        assertThat(userServiceUnderTest.findAllById(null)).isEmpty();
+    }
 }
@@ -0,0 +1,7 @@
+export type SessionEventType = 'created' | 'updated' | 'deleted' | 'participant_joined' | 'participant_left' | 'resync';
+
+export interface SessionEvent {
+  type: SessionEventType;
+  sessionId?: number;
+  userId?: number;
+}
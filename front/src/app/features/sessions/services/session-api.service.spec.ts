@@ -1,4 +1,4 @@
-import { HttpClient, HttpClientModule } from '@angular/common/http';
+import { HttpClient, HttpClientModule, HttpHeaders, HttpResponse } from '@angular/common/http';
 import { TestBed } from '@angular/core/testing';
 import { expect } from '@jest/globals';
 
@@ -39,11 +39,32 @@ describe('SessionApiService', () => {
       { id: 2, name: 'Session 2', description: 'Description 2', date: new Date(), teacher_id: 2, users: [] }
     ];
 
-    httpClientSpy.get.mockReturnValue(of(mockSessions));
+    httpClientSpy.get.mockReturnValue(of(new HttpResponse({ body: mockSessions })));
 
     service.all().subscribe(sessions => {
       expect(sessions).toEqual(mockSessions);
     });
+    expect(httpClientSpy.get).toHaveBeenCalledTimes(1);
+  });
+
+  it('should follow the next cursor until the last page', () => {
+    const firstPage: Session[] = [
+      { id: 1, name: 'Session 1', description: 'Description 1', date: new Date(), teacher_id: 1, users: [] }
+    ];
+    const lastPage: Session[] = [
+      { id: 2, name: 'Session 2', description: 'Description 2', date: new Date(), teacher_id: 2, users: [] }
+    ];
+
+    httpClientSpy.get
+      .mockReturnValueOnce(of(new HttpResponse({ body: firstPage, headers: new HttpHeaders({ 'X-Next-Cursor': 'abc' }) })))
+      .mockReturnValueOnce(of(new HttpResponse({ body: lastPage })));
+
+    let result: Session[] | undefined;
+    service.all().subscribe(sessions => result = sessions);
+
+    expect(result).toEqual([...firstPage, ...lastPage]);
+    expect(httpClientSpy.get).toHaveBeenCalledTimes(2);
+    expect(httpClientSpy.get.mock.calls[1][1].params.get('cursor')).toBe('abc');
   });
 
   it('should handle error and return empty array on failure', () => {
@@ -54,6 +75,28 @@ describe('SessionApiService', () => {
     });
   });
 
+  it('should open the change stream with a stream token and emit its events', () => {
+    const listeners: { [type: string]: (event: MessageEvent) => void } = {};
+    const eventSource = {
+      addEventListener: jest.fn((type: string, listener: (event: MessageEvent) => void) => listeners[type] = listener),
+      close: jest.fn(),
+      onerror: null
+    };
+    const eventSourceConstructor = jest.fn(() => eventSource);
+    (global as any).EventSource = eventSourceConstructor;
+    httpClientSpy.post.mockReturnValue(of({ token: 'stream-token', expiresInMs: 60000 }));
+
+    const events: any[] = [];
+    const subscription = service.changes().subscribe(event => events.push(event));
+    listeners['participant_joined']({ data: '{"type":"participant_joined","sessionId":1,"userId":2}' } as MessageEvent);
+    subscription.unsubscribe();
+
+    expect(httpClientSpy.post).toHaveBeenCalledWith('api/session/stream/token', null);
+    expect(eventSourceConstructor).toHaveBeenCalledWith('api/session/stream?token=stream-token');
+    expect(events).toEqual([{ type: 'participant_joined', sessionId: 1, userId: 2 }]);
+    expect(eventSource.close).toHaveBeenCalled();
+  });
+
   it('should return a session by id', () => {
     const mockSession: Session = { id: 1, name: 'Session 1', description: 'Description 1', date: new Date(), teacher_id: 1, users: [] };
 
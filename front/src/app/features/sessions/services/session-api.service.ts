@@ -1,7 +1,24 @@
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Injectable } from '@angular/core';
-import { Observable } from 'rxjs';
+import { EMPTY, Observable } from 'rxjs';
+import { expand, map, reduce } from 'rxjs/operators';
 import { Session } from '../interfaces/session.interface';
+import { SessionEvent, SessionEventType } from '../interfaces/sessionEvent.interface';
+
+const SESSION_EVENT_TYPES: SessionEventType[] = ['created', 'updated', 'deleted', 'participant_joined', 'participant_left', 'resync'];
+
+// Delay before reopening a stream that failed.
+const STREAM_RETRY_DELAY_MS = 1000;
+
+interface SessionPage {
+  sessions: Session[];
+  nextCursor: string | null;
+}
+
+interface StreamToken {
+  token: string;
+  expiresInMs: number;
+}
 
 @Injectable({
   providedIn: 'root'
@@ -13,8 +30,12 @@ export class SessionApiService {
   constructor(private httpClient: HttpClient) {
   }
 
+  // The API returns one page at a time and announces the next one in X-Next-Cursor.
   public all(): Observable<Session[]> {
-    return this.httpClient.get<Session[]>(this.pathService);
+    return this.page().pipe(
+      expand(page => page.nextCursor ? this.page(page.nextCursor) : EMPTY),
+      reduce((sessions: Session[], page: SessionPage) => sessions.concat(page.sessions), [])
+    );
   }
 
   public detail(id: string): Observable<Session> {
@@ -41,4 +62,49 @@ export class SessionApiService {
     return this.httpClient.delete<void>(`${this.pathService}/${id}/participate/${userId}`);
   }
 
+  // EventSource cannot send the Authorization header: each connection first asks for a short-lived stream token,
+  // and a dropped connection is reopened with a new one rather than by the browser's own retry.
+  public changes(): Observable<SessionEvent> {
+    return new Observable<SessionEvent>(subscriber => {
+      let source: EventSource | undefined;
+      let retry: ReturnType<typeof setTimeout> | undefined;
+      let closed = false;
+
+      const open = () => this.httpClient.post<StreamToken>(`${this.pathService}/stream/token`, null).subscribe({
+        next: ({ token }) => {
+          if (closed) {
+            return;
+          }
+          source = new EventSource(`${this.pathService}/stream?token=${encodeURIComponent(token)}`);
+          SESSION_EVENT_TYPES.forEach(type => source!.addEventListener(type, event =>
+            subscriber.next(JSON.parse((event as MessageEvent).data))));
+          source.onerror = () => {
+            source!.close();
+            if (!closed) {
+              retry = setTimeout(open, STREAM_RETRY_DELAY_MS);
+            }
+          };
+        },
+        error: error => subscriber.error(error)
+      });
+
+      open();
+      return () => {
+        closed = true;
+        clearTimeout(retry);
+        source?.close();
+      };
+    });
+  }
+
+  private page(cursor?: string): Observable<SessionPage> {
+    const params = cursor ? new HttpParams().set('cursor', cursor) : undefined;
+    return this.httpClient.get<Session[]>(this.pathService, { params, observe: 'response' }).pipe(
+      map(response => ({
+        sessions: response.body ?? [],
+        nextCursor: response.headers.get('X-Next-Cursor')
+      }))
+    );
+  }
+
 }
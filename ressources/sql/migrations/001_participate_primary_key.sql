@@ -0,0 +1,18 @@
+-- Brings PARTICIPATE of a database created before bookings became single-row writes to the layout of script.sql:
+-- one row per (session, user), enforced by the primary key, plus the per-user index for user listings.
+-- Duplicate bookings are collapsed first, since the key cannot be added while they remain.
+
+CREATE TEMPORARY TABLE `PARTICIPATE_DISTINCT` AS
+SELECT DISTINCT `user_id`, `session_id` FROM `PARTICIPATE`
+WHERE `user_id` IS NOT NULL AND `session_id` IS NOT NULL;
+
+START TRANSACTION;
+DELETE FROM `PARTICIPATE`;
+INSERT INTO `PARTICIPATE` (`user_id`, `session_id`)
+SELECT `user_id`, `session_id` FROM `PARTICIPATE_DISTINCT`;
+COMMIT;
+
+DROP TABLE `PARTICIPATE_DISTINCT`;
+
+ALTER TABLE `PARTICIPATE` ADD PRIMARY KEY (`session_id`, `user_id`);
+CREATE INDEX `idx_participate_user` ON `PARTICIPATE` (`user_id`, `session_id`);
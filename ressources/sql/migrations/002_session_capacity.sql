@@ -0,0 +1,7 @@
+-- Adds seat limits to SESSIONS of an existing database. Sessions keep no limit (capacity NULL) until an admin sets
+-- one, and booked_seats is recounted from PARTICIPATE, which 001 has already reduced to one row per booking.
+
+ALTER TABLE `SESSIONS` ADD COLUMN `capacity` INT;
+ALTER TABLE `SESSIONS` ADD COLUMN `booked_seats` INT NOT NULL DEFAULT 0;
+
+UPDATE `SESSIONS` s SET `booked_seats` = (SELECT COUNT(*) FROM `PARTICIPATE` p WHERE p.`session_id` = s.`id`);
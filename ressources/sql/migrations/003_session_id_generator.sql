@@ -0,0 +1,18 @@
+-- Moves session ids of an existing database from AUTO_INCREMENT to the ID_GENERATOR table used for batched inserts.
+-- Run it with the application stopped: the seed is read from the ids present when it runs.
+--
+-- Ids are handed out in blocks of 100, from next_val - 98 up to next_val + 1, so seeding MAX(id) + 99 starts right
+-- after the ids already in the table.
+
+CREATE TABLE `ID_GENERATOR` (
+  `name` VARCHAR(64) PRIMARY KEY,
+  `next_val` BIGINT NOT NULL
+);
+
+INSERT INTO `ID_GENERATOR` (`name`, `next_val`)
+SELECT 'SESSIONS', COALESCE(MAX(`id`), 0) + 99 FROM `SESSIONS`;
+
+-- PARTICIPATE references SESSIONS.id, and MySQL refuses to redefine a referenced column while the checks are on.
+SET FOREIGN_KEY_CHECKS = 0;
+ALTER TABLE `SESSIONS` MODIFY `id` INT NOT NULL;
+SET FOREIGN_KEY_CHECKS = 1;
@@ -7,13 +7,30 @@ CREATE TABLE `TEACHERS` (
 );
 
 CREATE TABLE `SESSIONS` (
-  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `id` INT PRIMARY KEY,
   `name` VARCHAR(50),
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
   `teacher_id` int,
+  `capacity` INT,
+  `booked_seats` INT NOT NULL DEFAULT 0,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  -- No ON UPDATE: every write stamps updated_at itself, from the application clock.
+  `updated_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3),
+  INDEX `idx_sessions_date` (`date`, `id`),
+  INDEX `idx_sessions_teacher_date` (`teacher_id`, `date`, `id`),
+  INDEX `idx_sessions_updated` (`updated_at`, `id`)
+);
+
+CREATE TABLE `SESSION_DELETIONS` (
+  `session_id` INT PRIMARY KEY,
+  `deleted_at` DATETIME(3) NOT NULL,
+  INDEX `idx_session_deletions_deleted_at` (`deleted_at`)
+);
+
+CREATE TABLE `ID_GENERATOR` (
+  `name` VARCHAR(64) PRIMARY KEY,
+  `next_val` BIGINT NOT NULL
 );
 
 CREATE TABLE `USERS` (
@@ -27,14 +44,39 @@ CREATE TABLE `USERS` (
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+CREATE TABLE `REVOKED_TOKENS` (
+  `token_id` VARCHAR(64) PRIMARY KEY,
+  `revoked_at` DATETIME(3) NOT NULL,
+  `expires_at` DATETIME(3) NOT NULL,
+  INDEX `idx_revoked_tokens_expires_at` (`expires_at`)
+);
+
 CREATE TABLE `PARTICIPATE` (
   `user_id` INT, 
-  `session_id` INT
+  `session_id` INT,
+  PRIMARY KEY (`session_id`, `user_id`),
+  INDEX `idx_participate_user` (`user_id`, `session_id`)
+);
+
+CREATE TABLE `WAITLIST` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  UNIQUE (`session_id`, `user_id`),
+  INDEX `idx_waitlist_session_order` (`session_id`, `id`)
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+
+-- Session ids come from ID_GENERATOR in blocks of 100, and Hibernate hands out next_val - 98 up to next_val + 1:
+-- 99 makes the first session id 1. An existing database is seeded from its own ids by migrations/003.
+INSERT INTO ID_GENERATOR (name, next_val)
+VALUES ('SESSIONS', 99);
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),